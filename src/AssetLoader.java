@@ -0,0 +1,183 @@
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This class is used to load every image and the music of the game in parallel when the game starts.
+ * The assets are decoded by a small pool of background threads while the start menu is shown,
+ * so the game window opens with everything already in memory. Asking for an asset that is still
+ * loading waits for it, and asking for an unknown asset loads it on the spot.
+ * The time of every asset and of the whole start is printed.
+ * An asset that fails to load counts as finished, so the progress still reaches the total, and its error is printed.
+ */
+class AssetLoader {
+    static final String HOME_SCREEN_IMAGE = "assets/HomeScreen.jpg";
+    static final String MUSIC = "assets/bgmusic.wav";
+    private static final String[] IMAGES = {
+            HOME_SCREEN_IMAGE,
+            "assets/yellowst1.jpg",
+            "assets/yogi.png",
+            "assets/SpongeRanger.png",
+            "assets/tree.png",
+            "assets/mountain.png",
+            "assets/honeyPot.png"
+    };
+
+    private final long startNanos = System.nanoTime();
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<BufferedImage>> images = new LinkedHashMap<>();
+    private final CompletableFuture<MusicPlayer> music;
+    private final AtomicInteger loaded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong loadNanos = new AtomicLong();
+    private final List<Runnable> progressListeners = new CopyOnWriteArrayList<>();
+    private final int total;
+
+    /**
+     * This is the constructor of the class.
+     * It starts loading every asset at once.
+     */
+    public AssetLoader() {
+        int threads = Math.max(2, Math.min(IMAGES.length + 1, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "asset-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        total = IMAGES.length + 1;
+        music = CompletableFuture.supplyAsync(() -> timed(MUSIC, () -> {
+            MusicPlayer player = new MusicPlayer(new File(MUSIC));
+            player.awaitReady();
+            if (!player.isAvailable()) {
+                failed.incrementAndGet();
+                System.err.println("Failed to load " + MUSIC + ", the game plays without music");
+            }
+            return player;
+        }), executor);
+        for (String path : IMAGES) {
+            images.put(path, CompletableFuture.supplyAsync(() -> timed(path, () -> decode(path)), executor)
+                    .exceptionally(e -> null));
+        }
+        CompletableFuture<?>[] assets = images.values().toArray(new CompletableFuture<?>[total]);
+        assets[total - 1] = music;
+        CompletableFuture.allOf(assets).whenComplete((ignored, e) -> {
+            logMilestone("All " + total + " assets loaded, " + failed.get() + " failed (" + loadNanos.get() / 1_000_000
+                    + " ms of loading on " + threads + " threads),");
+            executor.shutdown();
+        });
+    }
+
+    /**
+     * This method is used to load an asset and print how long it took.
+     * If the asset fails to load, the error is printed and thrown again, and the asset still counts as finished.
+     *
+     * @param name   The path of the asset.
+     * @param loader The code that loads the asset.
+     * @return The asset.
+     */
+    private <T> T timed(String name, Supplier<T> loader) {
+        long start = System.nanoTime();
+        try {
+            T asset = loader.get();
+            long end = System.nanoTime();
+            loadNanos.addAndGet(end - start);
+            GameMetrics.record(GameMetrics.Path.ASSET_DECODE, end - start);
+            System.out.printf("Loaded %-26s in %4d ms (%d ms after start, %s)%n", name, (end - start) / 1_000_000,
+                    (end - startNanos) / 1_000_000, Thread.currentThread().getName());
+            return asset;
+        } catch (RuntimeException | Error e) {
+            failed.incrementAndGet();
+            System.err.println("Failed to load " + name + ": " + e);
+            e.printStackTrace();
+            throw e;
+        } finally {
+            loaded.incrementAndGet();
+            for (Runnable listener : progressListeners) {
+                SwingUtilities.invokeLater(listener);
+            }
+        }
+    }
+
+    private static BufferedImage decode(String path) {
+        try {
+            return ImageIO.read(new File(path));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * This method is used to get a decoded image, waiting for it if it is still loading.
+     *
+     * @param path The path of the image asset.
+     * @return The decoded image, or null if it could not be read.
+     */
+    public BufferedImage getImage(String path) {
+        CompletableFuture<BufferedImage> image = images.get(path);
+        return image == null ? decode(path) : image.join();
+    }
+
+    /**
+     * This method is used to get a decoded image if it has been loaded already.
+     *
+     * @param path The path of the image asset.
+     * @return The decoded image, or null if it is still loading or could not be read.
+     */
+    public BufferedImage getImageIfLoaded(String path) {
+        CompletableFuture<BufferedImage> image = images.get(path);
+        return image == null ? null : image.getNow(null);
+    }
+
+    /**
+     * This method is used to get the music player, waiting for it if it is still being prepared.
+     *
+     * @return The music player.
+     */
+    public MusicPlayer getMusic() {
+        return music.join();
+    }
+
+    public int getLoaded() {
+        return loaded.get();
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public boolean isDone() {
+        return loaded.get() == total;
+    }
+
+    /**
+     * This method is used to add a listener that is called on the event dispatch thread whenever an asset is loaded.
+     *
+     * @param listener The listener.
+     */
+    public void addProgressListener(Runnable listener) {
+        progressListeners.add(listener);
+    }
+
+    /**
+     * This method is used to print the time since the start of the game.
+     *
+     * @param milestone What has just happened.
+     */
+    public void logMilestone(String milestone) {
+        System.out.println(milestone + " " + (System.nanoTime() - startNanos) / 1_000_000 + " ms after start");
+    }
+}
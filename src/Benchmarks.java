@@ -0,0 +1,441 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class is used to measure the hot paths of the game.
+ * Every benchmark runs for each combination of level and grid size,
+ * and the results are written as JSON in the layout of JMH results, so runs can be compared.
+ * Some benchmarks also count the bytes that an operation allocates, which is written as the secondary metric
+ * gc.alloc.rate.norm of JMH, in bytes per operation.
+ * <p>
+ * Usage: {@code java -Djava.awt.headless=true Benchmarks [output.json]}.
+ * The system properties {@code bench.levels}, {@code bench.grids}, {@code bench.viewport}, {@code bench.warmup},
+ * {@code bench.iterations}, {@code bench.time} and {@code bench.threads} change the parameters.
+ */
+public class Benchmarks {
+    private static final long SEED = 42;
+    private static final int ALLOCATION_WARMUP_ROUNDS = 5;
+    private static volatile long sink;
+
+    private final int warmupIterations = Integer.getInteger("bench.warmup", 3);
+    private final int measurementIterations = Integer.getInteger("bench.iterations", 5);
+    private final long iterationNanos = Long.getLong("bench.time", 200) * 1_000_000L;
+    private final List<String> results = new ArrayList<>();
+    private final int[] tickThreads = parseList(System.getProperty("bench.threads", defaultTickThreads()));
+
+    /**
+     * A single operation that is measured by a benchmark.
+     */
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String output = args.length > 0 ? args[0] : "benchmarks.json";
+        int[] levels = parseList(System.getProperty("bench.levels", "1,5,10"));
+        int[] grids = parseList(System.getProperty("bench.grids", "20,50,100"));
+
+        Benchmarks benchmarks = new Benchmarks();
+        for (int gridSize : grids) {
+            for (int level : levels) {
+                benchmarks.runAll(level, gridSize);
+            }
+        }
+        benchmarks.write(output);
+        System.out.println("Results written to " + output);
+    }
+
+    /**
+     * This method is used to run every benchmark for one level and grid size.
+     *
+     * @param level    The level of the game.
+     * @param gridSize The number of cells on each side of the grid.
+     */
+    private void runAll(int level, int gridSize) throws Exception {
+        GameModel model = new GameModel(gridSize, SEED);
+        model.setLevel(level);
+        measure("initializeLevel", level, gridSize, model::initializeLevel, 500);
+
+        int[] basketRows = new int[model.getNumBaskets()];
+        int[] basketCols = new int[model.getNumBaskets()];
+        for (int i = 0; i < basketRows.length; i++) {
+            basketRows[i] = model.getBasketRow(i);
+            basketCols[i] = model.getBasketCol(i);
+        }
+        ReachabilityCheck reachability = model.getReachability();
+        measure("reachabilityCheck", level, gridSize, () -> {
+            if (reachability.check(0, 0, basketRows, basketCols, basketRows.length)) {
+                sink++;
+            }
+        });
+        System.out.println(reachability);
+
+        GameModel tickModel = new GameModel(gridSize, SEED);
+        tickModel.setLevel(level);
+        measureTicks("rangerTick", level, gridSize, tickModel);
+
+        for (int threads : tickThreads) {
+            measureParallelTick(level, gridSize, threads);
+        }
+
+        GameModel pursuitModel = new GameModel(gridSize, SEED);
+        pursuitModel.setLevel(level);
+        pursuitModel.setPursuitPercent(100);
+        PursuitField field = pursuitModel.getPursuitField();
+        int[] step = {0};
+        measure("pursuitFieldBuild", level, gridSize, () -> {
+            field.setTarget(0, step[0]++ & 1);
+            field.advance(Integer.MAX_VALUE);
+        });
+        measure("pursuitStep", level, gridSize, () -> {
+            for (int i = 0; i < pursuitModel.getNumRangers(); i++) {
+                sink += field.nextStep(pursuitModel.getRangerRow(i), pursuitModel.getRangerCol(i));
+            }
+        });
+
+        Random cells = new Random(SEED);
+        measure("checkRangerCollision", level, gridSize, () -> {
+            if (model.checkRangerCollision(cells.nextInt(gridSize), cells.nextInt(gridSize))) {
+                sink++;
+            }
+        });
+        measure("checkYogiCollision", level, gridSize, () -> {
+            if (model.checkYogiCollision(cells.nextInt(gridSize), cells.nextInt(gridSize))) {
+                sink++;
+            }
+        });
+
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                measurePaint(level, gridSize);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * This method is used to list the thread counts of the parallel tick: the powers of two up to the number of cores.
+     *
+     * @return The thread counts, separated by commas, or an empty string on a single core.
+     */
+    private static String defaultTickThreads() {
+        StringBuilder threads = new StringBuilder();
+        for (int count = 2; count <= Runtime.getRuntime().availableProcessors(); count *= 2) {
+            threads.append(threads.length() == 0 ? "" : ",").append(count);
+        }
+        return threads.toString();
+    }
+
+    /**
+     * This method is used to measure the ranger tick with the moves proposed on several threads.
+     * It first checks that a few hundred ticks give the same rangers as the single-threaded tick.
+     *
+     * @param level    The level of the game.
+     * @param gridSize The number of cells on each side of the grid.
+     * @param threads  The number of threads.
+     */
+    private void measureParallelTick(int level, int gridSize, int threads) throws Exception {
+        GameModel single = new GameModel(gridSize, SEED);
+        GameModel parallel = new GameModel(gridSize, SEED);
+        single.setLevel(level);
+        parallel.setLevel(level);
+        parallel.setTickThreads(threads);
+        for (int tick = 0; tick < 200; tick++) {
+            single.tickRangers();
+            parallel.tickRangers();
+            for (int i = 0; i < single.getNumRangers(); i++) {
+                if (single.getRangerRow(i) != parallel.getRangerRow(i) || single.getRangerCol(i) != parallel.getRangerCol(i)) {
+                    throw new IllegalStateException("The tick on " + threads + " threads differs from the single-threaded tick.");
+                }
+            }
+        }
+        measureTicks("rangerTick.threads" + threads, level, gridSize, parallel);
+        parallel.setTickThreads(1);
+    }
+
+    /**
+     * This method is used to measure painting the game panel into an offscreen image.
+     * It runs on the event dispatch thread, so the timers of the panel cannot change the model meanwhile.
+     *
+     * @param level    The level of the game.
+     * @param gridSize The number of cells on each side of the grid.
+     */
+    private void measurePaint(int level, int gridSize) throws Exception {
+        GameModel model = new GameModel(gridSize, SEED);
+        GamePanel panel = new GamePanel(model);
+        panel.stopGame();
+        model.setLevel(level);
+
+        int size = Integer.getInteger("bench.viewport", GameModel.DEFAULT_GRID_SIZE * GamePanel.CELL_SIZE + 1);
+        panel.setSize(size, size);
+        BufferedImage frame = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        measure("paintComponent", level, gridSize, () -> {
+            Graphics2D g = frame.createGraphics();
+            panel.paint(g);
+            g.dispose();
+        });
+        measureHud(panel.getHud(), frame, level, gridSize);
+    }
+
+    /**
+     * This method is used to measure updating and drawing the HUD, and to count the bytes it allocates,
+     * which should be none.
+     *
+     * @param hud      The HUD of the panel.
+     * @param frame    The offscreen image to draw into.
+     * @param level    The level of the game.
+     * @param gridSize The number of cells on each side of the grid.
+     */
+    private void measureHud(Hud hud, BufferedImage frame, int level, int gridSize) throws Exception {
+        Graphics2D g = frame.createGraphics();
+        long[] step = {0};
+        measure("hudUpdate", level, gridSize, () -> {
+            long value = step[0]++;
+            hud.set(Hud.Field.TIME, value);
+            hud.set(Hud.Field.BASKETS, value & 7);
+            hud.paint(g, frame.getWidth(), frame.getHeight());
+        }, 10_000);
+        g.dispose();
+    }
+
+    /**
+     * This method is used to measure the average time of an operation.
+     *
+     * @param name      The name of the benchmark.
+     * @param level     The level parameter.
+     * @param gridSize  The grid size parameter.
+     * @param operation The operation to measure.
+     */
+    private void measure(String name, int level, int gridSize, Operation operation) throws Exception {
+        measure(name, level, gridSize, operation, 0);
+    }
+
+    /**
+     * This method is used to measure the average time of an operation and the bytes it allocates.
+     * The bytes allocated by this thread are read before and after a number of operations. The operation is first run
+     * a few times that number, so the count does not depend on how far the timed iterations got the JIT compiler.
+     *
+     * @param name       The name of the benchmark.
+     * @param level      The level parameter.
+     * @param gridSize   The grid size parameter.
+     * @param operation  The operation to measure.
+     * @param operations The number of operations whose allocations are counted, or 0 to not count them.
+     */
+    private void measure(String name, int level, int gridSize, Operation operation, int operations) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(operation);
+        }
+        double[] scores = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            scores[i] = runIteration(operation);
+        }
+
+        String allocation = "";
+        if (operations > 0) {
+            long allocated = countAllocatedBytes(operation, operations);
+            System.out.printf("%-24s level=%-3d gridSize=%-5d %12d bytes allocated in %d operations%n", name, level, gridSize,
+                    allocated, operations);
+            allocation = String.format("%.3f", (double) allocated / operations);
+        }
+        report(name, level, gridSize, scores, allocation);
+    }
+
+    /**
+     * This method is used to print the result of a benchmark and to add it to the results.
+     *
+     * @param name       The name of the benchmark.
+     * @param level      The level parameter.
+     * @param gridSize   The grid size parameter.
+     * @param scores     The average time of one operation in every measured iteration.
+     * @param allocation The allocated bytes per operation, or an empty string.
+     */
+    private void report(String name, int level, int gridSize, double[] scores, String allocation) {
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+
+        System.out.printf("%-24s level=%-3d gridSize=%-5d %12.1f ns/op  +- %.1f%n", name, level, gridSize, mean, error);
+        results.add(toJson(name, level, gridSize, mean, error, scores, allocation));
+    }
+
+    /**
+     * This method is used to measure the ranger tick, with the ticks that cost a life reported as a benchmark of their own.
+     * A ranger that catches yogi makes the model switch to the retry layout, which it generates on the spot,
+     * so those ticks measure level generation and not the rangers. Every tick is therefore timed on its own:
+     * the plain ticks give the benchmark, and the ticks that lost a life give the benchmark with the suffix .lifeLost.
+     * A game over starts the level again outside the timed tick.
+     *
+     * @param name     The name of the benchmark.
+     * @param level    The level of the game.
+     * @param gridSize The number of cells on each side of the grid.
+     * @param model    The model whose rangers are ticked.
+     */
+    private void measureTicks(String name, int level, int gridSize, GameModel model) {
+        long[] lifeLost = new long[2];
+        for (int i = 0; i < warmupIterations; i++) {
+            runTickIteration(model, level, lifeLost);
+        }
+        lifeLost[0] = 0;
+        lifeLost[1] = 0;
+        double[] scores = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            scores[i] = runTickIteration(model, level, lifeLost);
+        }
+        report(name, level, gridSize, scores, "");
+        if (lifeLost[1] > 0) {
+            report(name + ".lifeLost", level, gridSize, new double[]{(double) lifeLost[0] / lifeLost[1]}, "");
+        }
+    }
+
+    /**
+     * This method is used to tick the rangers repeatedly for one iteration.
+     *
+     * @param model    The model whose rangers are ticked.
+     * @param level    The level to start again after a game over.
+     * @param lifeLost The total time and the number of the ticks that lost a life, which are added to.
+     * @return The average time of one tick that did not lose a life, in nanoseconds.
+     */
+    private double runTickIteration(GameModel model, int level, long[] lifeLost) {
+        long tickNanos = 0;
+        long ticks = 0;
+        long end = System.nanoTime() + iterationNanos;
+        long now;
+        do {
+            long start = System.nanoTime();
+            GameModel.Event event = model.tickRangers();
+            now = System.nanoTime();
+            if (event == GameModel.Event.LIFE_LOST) {
+                lifeLost[0] += now - start;
+                lifeLost[1]++;
+            } else {
+                tickNanos += now - start;
+                ticks++;
+                if (event == GameModel.Event.GAME_OVER) {
+                    model.setLevel(level);
+                    now = System.nanoTime();
+                }
+            }
+        } while (now < end);
+        return ticks == 0 ? Double.NaN : (double) tickNanos / ticks;
+    }
+
+    /**
+     * This method is used to count the bytes that this thread allocates while an operation runs a number of times,
+     * after it has run a few times as many to warm up.
+     *
+     * @param operation  The operation.
+     * @param operations The number of operations to count.
+     * @return The allocated bytes.
+     */
+    private static long countAllocatedBytes(Operation operation, int operations) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < ALLOCATION_WARMUP_ROUNDS * operations; i++) {
+            operation.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < operations; i++) {
+            operation.run();
+        }
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    /**
+     * This method is used to run an operation repeatedly for one iteration.
+     *
+     * @param operation The operation to measure.
+     * @return The average time of one operation in nanoseconds.
+     */
+    private double runIteration(Operation operation) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + iterationNanos;
+        long now;
+        do {
+            for (int i = 0; i < 16; i++) {
+                operation.run();
+            }
+            operations += 16;
+            now = System.nanoTime();
+        } while (now < end);
+        return (double) (now - start) / operations;
+    }
+
+    /**
+     * This method is used to format one result in the JSON layout of JMH.
+     * The allocated bytes per operation are left out when they are empty.
+     */
+    private static String toJson(String name, int level, int gridSize, double mean, double error, double[] scores,
+                                 String allocation) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < scores.length; i++) {
+            if (i > 0) {
+                raw.append(", ");
+            }
+            raw.append(String.format("%.3f", scores[i]));
+        }
+        return "    {\n"
+                + "        \"benchmark\" : \"Benchmarks." + name + "\",\n"
+                + "        \"mode\" : \"avgt\",\n"
+                + "        \"params\" : {\n"
+                + "            \"level\" : \"" + level + "\",\n"
+                + "            \"gridSize\" : \"" + gridSize + "\"\n"
+                + "        },\n"
+                + "        \"primaryMetric\" : {\n"
+                + "            \"score\" : " + String.format("%.3f", mean) + ",\n"
+                + "            \"scoreError\" : " + String.format("%.3f", error) + ",\n"
+                + "            \"scoreUnit\" : \"ns/op\",\n"
+                + "            \"rawData\" : [ [ " + raw + " ] ]\n"
+                + "        }" + (allocation.isEmpty() ? "" : ",\n"
+                + "        \"secondaryMetrics\" : {\n"
+                + "            \"\u00b7gc.alloc.rate.norm\" : {\n"
+                + "                \"score\" : " + allocation + ",\n"
+                + "                \"scoreUnit\" : \"B/op\",\n"
+                + "                \"rawData\" : [ [ " + allocation + " ] ]\n"
+                + "            }\n"
+                + "        }") + "\n"
+                + "    }";
+    }
+
+    /**
+     * This method is used to write all results to a JSON file.
+     *
+     * @param output The path of the JSON file.
+     */
+    private void write(String output) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8))) {
+            writer.println("[");
+            writer.println(String.join(",\n", results));
+            writer.println("]");
+        }
+    }
+
+    private static int[] parseList(String list) {
+        if (list.trim().isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
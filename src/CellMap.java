@@ -0,0 +1,137 @@
+import java.util.Arrays;
+
+/**
+ * This class is used to map cells of the grid to ints when only a few cells have an entry.
+ * The cells are kept in an open addressing hash table with linear probing, so its size follows the number
+ * of entries and not the size of the grid, and a lookup is a few loads. The table is at most half full,
+ * and a removed entry moves the entries after it back, so the table does not fill up with deleted slots.
+ * Nothing is allocated unless the table grows, and a cleared map keeps its table.
+ */
+class CellMap {
+    private static final int EMPTY = -1;
+
+    private int[] cells;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param capacity The number of entries the map holds before it grows.
+     */
+    public CellMap(int capacity) {
+        allocate(capacity);
+    }
+
+    /**
+     * This method is used to make room for a number of entries, so adding them does not grow the table.
+     *
+     * @param capacity The number of entries.
+     */
+    public void ensureCapacity(int capacity) {
+        if (2 * capacity > cells.length) {
+            int[] oldCells = cells;
+            int[] oldValues = values;
+            allocate(Math.max(capacity, cells.length));
+            for (int i = 0; i < oldCells.length; i++) {
+                if (oldCells[i] != EMPTY) {
+                    put(oldCells[i], oldValues[i]);
+                }
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        int length = Integer.highestOneBit(Math.max(1, 2 * capacity - 1)) << 1;
+        cells = new int[length];
+        values = new int[length];
+        Arrays.fill(cells, EMPTY);
+        mask = length - 1;
+        size = 0;
+    }
+
+    private int slot(int cell) {
+        int hash = cell * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+
+    /**
+     * This method is used to get the value of a cell.
+     *
+     * @param cell    The cell.
+     * @param missing The value to return if the cell has no entry.
+     * @return The value of the cell, or missing.
+     */
+    public int get(int cell, int missing) {
+        for (int slot = slot(cell); cells[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (cells[slot] == cell) {
+                return values[slot];
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * This method is used to set the value of a cell.
+     *
+     * @param cell  The cell, at least 0.
+     * @param value The value.
+     */
+    public void put(int cell, int value) {
+        ensureCapacity(size + 1);
+        int slot = slot(cell);
+        while (cells[slot] != EMPTY && cells[slot] != cell) {
+            slot = (slot + 1) & mask;
+        }
+        if (cells[slot] == EMPTY) {
+            cells[slot] = cell;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * This method is used to remove the entry of a cell.
+     * Every entry after it that would not be found from its own slot any more is moved into the gap.
+     *
+     * @param cell    The cell.
+     * @param missing The value to return if the cell has no entry.
+     * @return The value the cell had, or missing.
+     */
+    public int remove(int cell, int missing) {
+        int slot = slot(cell);
+        while (cells[slot] != cell) {
+            if (cells[slot] == EMPTY) {
+                return missing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int value = values[slot];
+        int gap = slot;
+        for (int next = (slot + 1) & mask; cells[next] != EMPTY; next = (next + 1) & mask) {
+            if (((next - slot(cells[next])) & mask) >= ((next - gap) & mask)) {
+                cells[gap] = cells[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        cells[gap] = EMPTY;
+        size--;
+        return value;
+    }
+
+    /**
+     * This method is used to remove every entry. The table is kept.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(cells, EMPTY);
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+}
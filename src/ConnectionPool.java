@@ -0,0 +1,138 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to reuse a few connections to the high score database.
+ * Opening a connection is the slowest part of saving a score, so idle connections are kept
+ * and handed out again. A connection that failed is closed instead of being kept.
+ */
+class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final DatabaseConfig config;
+    private final int maxSize;
+    private final BlockingQueue<Connection> idle;
+    private int openConnections;
+    private boolean tableChecked;
+    private boolean closed;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param config  The connection settings.
+     * @param maxSize The largest number of open connections.
+     */
+    public ConnectionPool(DatabaseConfig config, int maxSize) {
+        this.config = config;
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * This method is used to borrow a connection.
+     * It returns an idle connection if there is one, opens a new one if the pool is not full,
+     * and otherwise waits for a connection to be released.
+     *
+     * @param timeoutMillis How long to wait for a connection when the pool is full.
+     * @return The connection.
+     * @throws SQLException If no connection could be opened or the wait timed out.
+     */
+    public Connection borrow(long timeoutMillis) throws SQLException {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return connection;
+            }
+            discard(connection);
+        }
+        if (reserve()) {
+            try {
+                return open();
+            } catch (SQLException e) {
+                release();
+                throw e;
+            }
+        }
+        try {
+            connection = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        }
+        if (connection == null) {
+            throw new SQLException("No connection became free within " + timeoutMillis + " ms.");
+        }
+        return connection;
+    }
+
+    /**
+     * This method is used to give a connection back to the pool.
+     *
+     * @param connection The connection.
+     * @param broken     True if the connection failed and must be closed.
+     */
+    public void giveBack(Connection connection, boolean broken) {
+        synchronized (this) {
+            if (!broken && !closed && idle.offer(connection)) {
+                return;
+            }
+        }
+        discard(connection);
+    }
+
+    private synchronized boolean reserve() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed.");
+        }
+        if (openConnections < maxSize) {
+            openConnections++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void release() {
+        openConnections--;
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+        if (config.isCreateTable() && !tableChecked) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS scores (id INT AUTO_INCREMENT PRIMARY KEY, "
+                        + "player_name VARCHAR(255), score INT, time INT)");
+            }
+            tableChecked = true;
+        }
+        return connection;
+    }
+
+    private void discard(Connection connection) {
+        release();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method is used to close every idle connection.
+     * Connections that are still borrowed are closed when they are given back.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            discard(connection);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * This class is used to hold the settings of the high score store.
+ * By default the scores are kept in the directory given by yogi.scoreDir.
+ * With yogi.scoreStore=jdbc they are kept in a database instead: the defaults are the local MySQL server
+ * of the game, the system properties yogi.db.url, yogi.db.user and yogi.db.password point the game at
+ * another database, and yogi.db.createTable creates the scores table if it is missing.
+ */
+class DatabaseConfig {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final boolean createTable;
+    private final boolean local;
+    private final String localDirectory;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param url         The JDBC URL of the database.
+     * @param user        The user name.
+     * @param password    The password.
+     * @param createTable True to create the scores table if it is missing.
+     */
+    public DatabaseConfig(String url, String user, String password, boolean createTable) {
+        this(url, user, password, createTable, false, null);
+    }
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param url            The JDBC URL of the database.
+     * @param user           The user name.
+     * @param password       The password.
+     * @param createTable    True to create the scores table if it is missing.
+     * @param local          True to keep the scores in local files instead of the database.
+     * @param localDirectory The directory of the local files.
+     */
+    public DatabaseConfig(String url, String user, String password, boolean createTable,
+                          boolean local, String localDirectory) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.createTable = createTable;
+        this.local = local;
+        this.localDirectory = localDirectory;
+    }
+
+    /**
+     * This method is used to read the settings from the system properties.
+     *
+     * @return The settings.
+     */
+    public static DatabaseConfig fromSystemProperties() {
+        return new DatabaseConfig(
+                System.getProperty("yogi.db.url", "jdbc:mysql://localhost:3306/highscores"),
+                System.getProperty("yogi.db.user", "root"),
+                System.getProperty("yogi.db.password", "salam123"),
+                Boolean.getBoolean("yogi.db.createTable"),
+                !"jdbc".equalsIgnoreCase(System.getProperty("yogi.scoreStore", "local")),
+                System.getProperty("yogi.scoreDir", "scores"));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isCreateTable() {
+        return createTable;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+
+    public String getLocalDirectory() {
+        return localDirectory;
+    }
+}
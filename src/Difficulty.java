@@ -0,0 +1,73 @@
+/**
+ * This enum is used to choose how crowded the levels are.
+ * The number of rangers, trees and mountains grows with the level and is given per 20 x 20 cells,
+ * so a larger world has the same density. The number of baskets only grows with the level.
+ * The pursuit percentage is the chance that a ranger steps towards yogi instead of in a random direction.
+ */
+enum Difficulty {
+    NORMAL("Normal", 1, 1, 2, 0),
+    HARD("Hard", 2, 2, 2, 0),
+    DENSE("Dense", 4, 6, 2, 0),
+    CHASE("Chase", 1, 2, 2, 50),
+    PURSUIT("Pursuit", 1, 2, 2, 100);
+
+    private final String label;
+    private final int rangersPerLevel;
+    private final int obstaclesPerLevel;
+    private final int basketsPerLevel;
+    private final int pursuitPercent;
+
+    Difficulty(String label, int rangersPerLevel, int obstaclesPerLevel, int basketsPerLevel, int pursuitPercent) {
+        this.label = label;
+        this.rangersPerLevel = rangersPerLevel;
+        this.obstaclesPerLevel = obstaclesPerLevel;
+        this.basketsPerLevel = basketsPerLevel;
+        this.pursuitPercent = pursuitPercent;
+    }
+
+    /**
+     * This method is used to get the number of rangers of a level.
+     *
+     * @param level    The level.
+     * @param gridSize The number of cells on each side of the grid.
+     * @return The number of rangers.
+     */
+    public int rangers(int level, int gridSize) {
+        return scaleToArea(level * rangersPerLevel, gridSize);
+    }
+
+    /**
+     * This method is used to get the number of trees, which is also the number of mountains, of a level.
+     *
+     * @param level    The level.
+     * @param gridSize The number of cells on each side of the grid.
+     * @return The number of trees.
+     */
+    public int obstacles(int level, int gridSize) {
+        return scaleToArea(level * obstaclesPerLevel, gridSize);
+    }
+
+    /**
+     * This method is used to get the number of baskets of a level.
+     *
+     * @param level The level.
+     * @return The number of baskets.
+     */
+    public int baskets(int level) {
+        return level * basketsPerLevel;
+    }
+
+    public int getPursuitPercent() {
+        return pursuitPercent;
+    }
+
+    private static int scaleToArea(int count, int gridSize) {
+        long defaultCells = (long) GameModel.DEFAULT_GRID_SIZE * GameModel.DEFAULT_GRID_SIZE;
+        return (int) Math.max(count, count * ((long) gridSize * gridSize) / defaultCells);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/**
+ * This class is used to store the entities of one kind, such as the rangers or the baskets of a level.
+ * Every value of an entity is kept in a column, an array of primitive ints with one slot per entity,
+ * and the entities are packed at the start of the columns, so iterating them only touches live entities.
+ * Every store has a row and a column, a kind that needs more values asks for more columns, so a new kind of entity
+ * is a new store and not a new set of arrays.
+ * <p>
+ * An entity is removed by moving the last entity into its slot, so the order of the entities changes on removal.
+ * The columns only grow, and a cleared store keeps them, so a store that is reused for every level
+ * stops allocating once it has held the largest level.
+ * <p>
+ * A store of a kind whose entities never share a cell can also index their cells in a small hash table,
+ * sized to the entities and not to the grid, so the entity on a cell is found without a scan.
+ */
+class EntityStore {
+    static final int ROW = 0;
+    static final int COL = 1;
+    private static final int MIN_CAPACITY = 8;
+
+    private final int[][] columns;
+    private final int gridSize;
+    private final CellMap cellIndex;
+    private int size;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param numColumns The number of values of every entity, at least 2 for the row and the column.
+     */
+    public EntityStore(int numColumns) {
+        this(numColumns, 0);
+    }
+
+    /**
+     * This is the constructor of a store that indexes the cells of its entities, which must never share a cell.
+     *
+     * @param numColumns The number of values of every entity, at least 2 for the row and the column.
+     * @param gridSize   The number of cells on each side of the grid, or 0 to not index the cells.
+     */
+    public EntityStore(int numColumns, int gridSize) {
+        if (numColumns < 2) {
+            throw new IllegalArgumentException("An entity needs at least a row and a column: " + numColumns);
+        }
+        columns = new int[numColumns][MIN_CAPACITY];
+        this.gridSize = gridSize;
+        cellIndex = gridSize > 0 ? new CellMap(MIN_CAPACITY) : null;
+    }
+
+    /**
+     * This method is used to make room for a number of entities, so adding them does not grow the columns.
+     *
+     * @param capacity The number of entities.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > columns[0].length) {
+            int newCapacity = Math.max(capacity, 2 * columns[0].length);
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], newCapacity);
+            }
+            if (cellIndex != null) {
+                cellIndex.ensureCapacity(newCapacity);
+            }
+        }
+    }
+
+    /**
+     * This method is used to add an entity on a cell.
+     * Every further value of the entity starts as 0.
+     *
+     * @param row The row of the entity.
+     * @param col The column of the entity.
+     * @return The index of the entity.
+     */
+    public int add(int row, int col) {
+        ensureCapacity(size + 1);
+        columns[ROW][size] = row;
+        columns[COL][size] = col;
+        for (int c = 2; c < columns.length; c++) {
+            columns[c][size] = 0;
+        }
+        if (cellIndex != null) {
+            cellIndex.put(row * gridSize + col, size);
+        }
+        return size++;
+    }
+
+    /**
+     * This method is used to remove an entity by moving the last entity into its slot.
+     *
+     * @param i The index of the entity.
+     */
+    public void remove(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " of " + size + " entities");
+        }
+        size--;
+        if (cellIndex != null) {
+            cellIndex.remove(getRow(i) * gridSize + getCol(i), -1);
+            if (i < size) {
+                cellIndex.put(getRow(size) * gridSize + getCol(size), i);
+            }
+        }
+        for (int[] column : columns) {
+            column[i] = column[size];
+        }
+    }
+
+    /**
+     * This method is used to find the entity on a cell.
+     * A store that indexes its cells looks the cell up, any other store checks every entity.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index of the entity on the cell, or -1 if there is none.
+     */
+    public int indexOf(int row, int col) {
+        if (cellIndex != null) {
+            return cellIndex.get(row * gridSize + col, -1);
+        }
+        int[] rows = columns[ROW];
+        int[] cols = columns[COL];
+        for (int i = 0; i < size; i++) {
+            if (rows[i] == row && cols[i] == col) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This method is used to remove every entity. The columns are kept.
+     */
+    public void clear() {
+        size = 0;
+        if (cellIndex != null) {
+            cellIndex.clear();
+        }
+    }
+
+    /**
+     * This method is used to copy one value of every entity into another column.
+     *
+     * @param from The column to copy.
+     * @param to   The column to copy into.
+     */
+    public void copyColumn(int from, int to) {
+        System.arraycopy(columns[from], 0, columns[to], 0, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getRow(int i) {
+        return columns[ROW][i];
+    }
+
+    public int getCol(int i) {
+        return columns[COL][i];
+    }
+
+    public int get(int column, int i) {
+        return columns[column][i];
+    }
+
+    public void set(int column, int i, int value) {
+        columns[column][i] = value;
+    }
+
+    /**
+     * This method is used to move an entity to another cell.
+     *
+     * @param i   The index of the entity.
+     * @param row The new row.
+     * @param col The new column.
+     */
+    public void setCell(int i, int row, int col) {
+        if (cellIndex != null) {
+            cellIndex.remove(getRow(i) * gridSize + getCol(i), -1);
+            cellIndex.put(row * gridSize + col, i);
+        }
+        columns[ROW][i] = row;
+        columns[COL][i] = col;
+    }
+
+    /**
+     * This method is used to get the array of a column, for loops that pass it on.
+     * Only the first size() values are entities, and the array is replaced when the store grows.
+     *
+     * @param column The column.
+     * @return The array of the column.
+     */
+    int[] column(int column) {
+        return columns[column];
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.Random;
+
+/**
+ * This class is used to keep the set of free cells of the grid while a level is generated.
+ * The cells are kept in an array with the free cells first, so a random free cell can be picked
+ * and removed in constant time by swapping it with the last free cell.
+ * Every swap is logged, and reset undoes the swaps in reverse order, so the array is back in its
+ * original order after every level and the same seed always gives the same layout.
+ */
+class FreeCellSet {
+    private final int[] cells;
+    private final int[] positions;
+    private int size;
+    private int[] swapLog;
+    private int swaps;
+
+    /**
+     * This is the constructor of the class.
+     * It creates a set that contains every cell of the grid.
+     *
+     * @param cellCount The number of cells of the grid.
+     */
+    public FreeCellSet(int cellCount) {
+        cells = new int[cellCount];
+        positions = new int[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            cells[i] = i;
+            positions[i] = i;
+        }
+        size = cellCount;
+        swapLog = new int[64];
+    }
+
+    /**
+     * This method is used to make every cell free again.
+     * It costs one step for every change since the last reset, not one step for every cell.
+     */
+    public void reset() {
+        while (swaps > 0) {
+            swaps--;
+            swap(swapLog[2 * swaps], swapLog[2 * swaps + 1]);
+        }
+        size = cells.length;
+    }
+
+    /**
+     * This method is used to check if a cell is free.
+     *
+     * @param cell The index of the cell.
+     * @return True if the cell is free, false otherwise.
+     */
+    public boolean contains(int cell) {
+        return positions[cell] < size;
+    }
+
+    /**
+     * This method is used to mark a cell as taken.
+     *
+     * @param cell The index of the cell.
+     */
+    public void remove(int cell) {
+        if (contains(cell)) {
+            size--;
+            loggedSwap(positions[cell], size);
+        }
+    }
+
+    /**
+     * This method is used to mark a cell as free again.
+     *
+     * @param cell The index of the cell.
+     */
+    public void add(int cell) {
+        if (!contains(cell)) {
+            loggedSwap(positions[cell], size);
+            size++;
+        }
+    }
+
+    /**
+     * This method is used to take a random free cell.
+     *
+     * @param random The random number generator that picks the cell.
+     * @return The index of the cell.
+     * @throws IllegalStateException If there is no free cell.
+     */
+    public int removeRandom(Random random) {
+        if (size == 0) {
+            throw new IllegalStateException("There is no free cell left.");
+        }
+        int cell = cells[random.nextInt(size)];
+        remove(cell);
+        return cell;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void loggedSwap(int i, int j) {
+        if (i == j) {
+            return;
+        }
+        if (2 * swaps + 2 > swapLog.length) {
+            int[] larger = new int[swapLog.length * 2];
+            System.arraycopy(swapLog, 0, larger, 0, swapLog.length);
+            swapLog = larger;
+        }
+        swapLog[2 * swaps] = i;
+        swapLog[2 * swaps + 1] = j;
+        swaps++;
+        swap(i, j);
+    }
+
+    private void swap(int i, int j) {
+        int a = cells[i];
+        int b = cells[j];
+        cells[i] = b;
+        cells[j] = a;
+        positions[b] = i;
+        positions[a] = j;
+    }
+}
@@ -0,0 +1,179 @@
+import javax.swing.Timer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is used to drive the game with a fixed simulation rate.
+ * A single Swing timer wakes the loop up once per frame on the event dispatch thread.
+ * The loop then measures the real time since the last frame with System.nanoTime,
+ * runs as many simulation ticks as that time is worth, and renders once with the fraction
+ * of a tick that is left over, so the view can interpolate between two ticks.
+ * The time between frames and the time of every tick are recorded in the GameMetrics.
+ * While the loop is paused, it keeps rendering frames but runs no ticks, and the paused time is not counted.
+ * The loops whose timer is running are counted, so a loop that is started again without being stopped,
+ * or a panel that is dropped with its loop still running, shows up as a leaked timer.
+ */
+class GameLoop {
+
+    /**
+     * The callbacks of the loop.
+     */
+    interface Listener {
+        /**
+         * This method is called once for every simulation tick.
+         */
+        void tick();
+
+        /**
+         * This method is called once for every frame after the ticks of the frame.
+         *
+         * @param alpha The fraction of a tick that has passed since the last tick, from 0 to 1.
+         */
+        void render(double alpha);
+    }
+
+    private static final AtomicInteger runningLoops = new AtomicInteger();
+    private final Listener listener;
+    private final int ticksPerSecond;
+    private final long tickNanos;
+    private final long maxCatchUpNanos;
+    private final long frameNanos;
+    private final Timer frameTimer;
+    private boolean running;
+    private boolean paused;
+    private long lastFrameNanos;
+    private long accumulatorNanos;
+    private long elapsedNanos;
+    private long ticks;
+    private long droppedTicks;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param ticksPerSecond  The number of simulation ticks per second.
+     * @param framesPerSecond The number of frames per second.
+     * @param listener        The listener that ticks and renders the game.
+     */
+    public GameLoop(int ticksPerSecond, int framesPerSecond, Listener listener) {
+        this.listener = listener;
+        this.ticksPerSecond = ticksPerSecond;
+        this.tickNanos = 1_000_000_000L / ticksPerSecond;
+        this.maxCatchUpNanos = 1_000_000_000L;
+        this.frameNanos = Math.max(1, 1000 / framesPerSecond) * 1_000_000L;
+        this.frameTimer = new Timer(Math.max(1, 1000 / framesPerSecond), e -> runFrame());
+        this.frameTimer.setCoalesce(true);
+    }
+
+    /**
+     * This method is used to start or continue the loop.
+     * The time while the loop was stopped is not simulated and not counted.
+     */
+    public void start() {
+        running = true;
+        lastFrameNanos = System.nanoTime();
+        accumulatorNanos = 0;
+        if (!frameTimer.isRunning()) {
+            runningLoops.incrementAndGet();
+        }
+        frameTimer.start();
+    }
+
+    /**
+     * This method is used to stop the loop, for example while a message is shown.
+     */
+    public void stop() {
+        running = false;
+        if (frameTimer.isRunning()) {
+            runningLoops.decrementAndGet();
+        }
+        frameTimer.stop();
+    }
+
+    /**
+     * This method is used to pause or continue the simulation without stopping the frames.
+     * While paused, every frame renders the last tick completely.
+     *
+     * @param paused True to pause, false to continue.
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        accumulatorNanos = 0;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * This method is used to set the elapsed time back to zero.
+     */
+    public void resetClock() {
+        elapsedNanos = 0;
+    }
+
+    /**
+     * This method is used to run the ticks that are due and render one frame.
+     * If the loop falls more than a second behind, the rest of the missed time is dropped.
+     * A frame that starts more than two frame periods after the previous one is counted as late,
+     * because the event dispatch thread was busy with something else meanwhile.
+     */
+    private void runFrame() {
+        if (!running) {
+            return;
+        }
+        long now = System.nanoTime();
+        long delta = now - lastFrameNanos;
+        lastFrameNanos = now;
+        GameMetrics.recordFrame(delta, frameNanos);
+        if (paused) {
+            listener.render(1);
+            return;
+        }
+        elapsedNanos += delta;
+        accumulatorNanos += delta;
+        if (accumulatorNanos > maxCatchUpNanos) {
+            long dropped = (accumulatorNanos - maxCatchUpNanos) / tickNanos;
+            droppedTicks += dropped;
+            GameMetrics.addDroppedTicks(dropped);
+            accumulatorNanos = maxCatchUpNanos;
+        }
+        while (running && !paused && accumulatorNanos >= tickNanos) {
+            accumulatorNanos -= tickNanos;
+            ticks++;
+            long tickStart = System.nanoTime();
+            listener.tick();
+            GameMetrics.recordSince(GameMetrics.Path.TICK, tickStart);
+        }
+        if (running) {
+            listener.render(paused ? 1 : (double) accumulatorNanos / tickNanos);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * This method is used to count the loops whose frame timer is running, in the whole application.
+     *
+     * @return The number of running loops.
+     */
+    static int getRunningLoops() {
+        return runningLoops.get();
+    }
+}
@@ -0,0 +1,302 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * This class is used to measure where the time of the game goes.
+ * Every measured path has a latency histogram, and every measurement is also committed as a JFR event
+ * while a flight recording is running, so the timings can be read live over JMX, in the overlay of the game panel,
+ * or afterwards from the recording. The game loop also counts the frames that came late,
+ * which happens when the event dispatch thread was busy for longer than a frame.
+ */
+final class GameMetrics implements GameMetricsMXBean {
+    static final String OBJECT_NAME = "yogibear:type=GameMetrics";
+
+    /**
+     * The measured paths.
+     */
+    enum Path {
+        FRAME("frame"),
+        PAINT("paint"),
+        TICK("tick"),
+        INPUT_LATENCY("inputLatency"),
+        RANGER_TICK("rangerTick"),
+        LEVEL_GENERATION("levelGeneration"),
+        LEVEL_TRANSITION("levelTransition"),
+        SCORE_WRITE("scoreWrite"),
+        ASSET_DECODE("assetDecode"),
+        EDT_STALL("edtStall");
+
+        private final String label;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        Path(String label) {
+            this.label = label;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * The JFR event of one measurement.
+     */
+    @Name("yogibear.Timing")
+    @Label("Timing")
+    @Category("Yogi Bear")
+    @Description("The time one measured path of the game took")
+    @StackTrace(false)
+    static final class TimingEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    /**
+     * The JFR event of a frame that came late because the event dispatch thread was busy.
+     */
+    @Name("yogibear.EdtStall")
+    @Label("EDT Stall")
+    @Category("Yogi Bear")
+    @Description("A frame of the game loop that started later than two frame periods after the previous frame")
+    @StackTrace(false)
+    static final class StallEvent extends Event {
+        @Label("Frame Interval")
+        @Timespan(Timespan.NANOSECONDS)
+        long interval;
+
+        @Label("Stall")
+        @Timespan(Timespan.NANOSECONDS)
+        long stall;
+    }
+
+    private static final GameMetrics INSTANCE = new GameMetrics();
+    private static final EventType TIMING_TYPE = EventType.getEventType(TimingEvent.class);
+    private static final EventType STALL_TYPE = EventType.getEventType(StallEvent.class);
+    private static final AtomicLong frames = new AtomicLong();
+    private static final AtomicLong lateFrames = new AtomicLong();
+    private static final AtomicLong droppedTicks = new AtomicLong();
+    private static final AtomicLong pursuitBuilds = new AtomicLong();
+    private static final AtomicLong pursuitBuildTicks = new AtomicLong();
+    private static final AtomicLong maxPursuitBuildTicks = new AtomicLong();
+    private static boolean registered;
+
+    private GameMetrics() {
+    }
+
+    /**
+     * This method is used to register the metrics with the platform MBean server, once.
+     * A failure is printed, the game runs on without JMX.
+     */
+    static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method is used to record the time of a path that started at the given time and ends now.
+     *
+     * @param path       The path.
+     * @param startNanos The start time from System.nanoTime.
+     * @return The time it took in nanoseconds.
+     */
+    static long recordSince(Path path, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        record(path, nanos);
+        return nanos;
+    }
+
+    /**
+     * This method is used to record the time of a path.
+     *
+     * @param path  The path.
+     * @param nanos The time it took in nanoseconds.
+     */
+    static void record(Path path, long nanos) {
+        path.histogram.record(nanos);
+        if (TIMING_TYPE.isEnabled()) {
+            TimingEvent event = new TimingEvent();
+            event.path = path.label;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * This method is used to record the start of a frame of the game loop.
+     * A frame that started more than two frame periods after the previous one is counted as late,
+     * and the time beyond one frame period is counted as a stall of the event dispatch thread.
+     *
+     * @param intervalNanos The time since the previous frame.
+     * @param periodNanos   The time between two frames.
+     */
+    static void recordFrame(long intervalNanos, long periodNanos) {
+        frames.incrementAndGet();
+        record(Path.FRAME, intervalNanos);
+        if (intervalNanos > 2 * periodNanos) {
+            lateFrames.incrementAndGet();
+            record(Path.EDT_STALL, intervalNanos - periodNanos);
+            if (STALL_TYPE.isEnabled()) {
+                StallEvent event = new StallEvent();
+                event.interval = intervalNanos;
+                event.stall = intervalNanos - periodNanos;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * This method is used to count ticks that the game loop dropped because it fell too far behind.
+     *
+     * @param ticks The number of dropped ticks.
+     */
+    static void addDroppedTicks(long ticks) {
+        droppedTicks.addAndGet(ticks);
+    }
+
+    /**
+     * This method is used to record a completed build of the pursuit field.
+     * The rangers follow the previous field while a build runs, so its ticks are how far the rangers lag behind yogi.
+     *
+     * @param ticks The number of ticks the build took.
+     */
+    static void recordPursuitBuild(long ticks) {
+        pursuitBuilds.incrementAndGet();
+        pursuitBuildTicks.addAndGet(ticks);
+        maxPursuitBuildTicks.accumulateAndGet(ticks, Math::max);
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static <T> Map<String, T> perPath(Function<LatencyHistogram, T> value) {
+        Map<String, T> values = new LinkedHashMap<>();
+        for (Path path : Path.values()) {
+            values.put(path.label, value.apply(path.histogram));
+        }
+        return values;
+    }
+
+    private static Map<String, Double> perPathMillis(ToDoubleFunction<LatencyHistogram> nanos) {
+        return perPath(histogram -> nanos.applyAsDouble(histogram) / 1_000_000);
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return perPath(LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Double> getMeanMillis() {
+        return perPathMillis(LatencyHistogram::getMeanNanos);
+    }
+
+    @Override
+    public Map<String, Double> getP50Millis() {
+        return perPathMillis(histogram -> histogram.getPercentileNanos(50));
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return perPathMillis(histogram -> histogram.getPercentileNanos(99));
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        return perPathMillis(LatencyHistogram::getMaxNanos);
+    }
+
+    @Override
+    public long getFrames() {
+        return frames.get();
+    }
+
+    @Override
+    public long getLateFrames() {
+        return lateFrames.get();
+    }
+
+    @Override
+    public long getDroppedTicks() {
+        return droppedTicks.get();
+    }
+
+    @Override
+    public long getEdtStalls() {
+        return Path.EDT_STALL.histogram.getCount();
+    }
+
+    @Override
+    public double getMaxEdtStallMillis() {
+        return millis(Path.EDT_STALL.histogram.getMaxNanos());
+    }
+
+    @Override
+    public long getPursuitBuilds() {
+        return pursuitBuilds.get();
+    }
+
+    @Override
+    public double getMeanPursuitBuildTicks() {
+        long builds = pursuitBuilds.get();
+        return builds == 0 ? 0 : (double) pursuitBuildTicks.get() / builds;
+    }
+
+    @Override
+    public long getMaxPursuitBuildTicks() {
+        return maxPursuitBuildTicks.get();
+    }
+
+    @Override
+    public void reset() {
+        for (Path path : Path.values()) {
+            path.histogram.reset();
+        }
+        frames.set(0);
+        lateFrames.set(0);
+        droppedTicks.set(0);
+        pursuitBuilds.set(0);
+        pursuitBuildTicks.set(0);
+        maxPursuitBuildTicks.set(0);
+    }
+
+    /**
+     * This method is used to get the metrics as they are shown over JMX.
+     *
+     * @return The metrics.
+     */
+    static GameMetrics get() {
+        return INSTANCE;
+    }
+}
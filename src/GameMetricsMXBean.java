@@ -0,0 +1,49 @@
+import java.util.Map;
+
+/**
+ * This interface is used to read the timings of the game over JMX, for example with JConsole or VisualVM.
+ * The maps hold one value for every measured path, keyed by the name of the path.
+ */
+public interface GameMetricsMXBean {
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeanMillis();
+
+    Map<String, Double> getP50Millis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Double> getMaxMillis();
+
+    long getFrames();
+
+    long getLateFrames();
+
+    long getDroppedTicks();
+
+    long getEdtStalls();
+
+    double getMaxEdtStallMillis();
+
+    /**
+     * This method is used to get the number of completed builds of the pursuit field.
+     *
+     * @return The number of builds.
+     */
+    long getPursuitBuilds();
+
+    /**
+     * This method is used to get the average number of ticks a build of the pursuit field took,
+     * which is how far the rangers lag behind yogi.
+     *
+     * @return The average ticks per completed build.
+     */
+    double getMeanPursuitBuildTicks();
+
+    long getMaxPursuitBuildTicks();
+
+    /**
+     * This method is used to forget every timing and counter, for example before measuring a scene.
+     */
+    void reset();
+}
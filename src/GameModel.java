@@ -0,0 +1,990 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to hold the state and the rules of the game.
+ * It knows nothing about AWT or Swing, so a game can be simulated without a display.
+ * The GamePanel draws this model and forwards the key presses and timer ticks to it.
+ */
+class GameModel {
+    public static final int DEFAULT_GRID_SIZE = 20;
+    public static final int MIN_GRID_SIZE = 4;
+    public static final int MAX_GRID_SIZE = 2048;
+    public static final byte NO_OBSTACLE = 0;
+    public static final byte TREE = 1;
+    public static final byte MOUNTAIN = 2;
+    public static final int MAX_LEVEL = 10;
+    public static final int MAX_LIVES = 3;
+    static final int NO_SPAWN_REGION_SIZE = 3;
+    static final int PREVIOUS_ROW = 2;
+    static final int PREVIOUS_COL = 3;
+    private static final int PARALLEL_TICK_CHUNK = 1024;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int NEIGHBOUR_MASK = 0b111_101_111;
+
+    /**
+     * The inputs that the player can give in one step.
+     */
+    public enum Input {
+        NONE, UP, DOWN, LEFT, RIGHT
+    }
+
+    /**
+     * The results of a move or a tick that the view may have to react to.
+     */
+    public enum Event {
+        NONE, MOVED, BASKET_COLLECTED, LIFE_LOST, LEVEL_COMPLETE, GAME_COMPLETE, GAME_OVER
+    }
+
+    private final int gridSize;
+    private long seed;
+    private final Random random;
+    private EntityStore baskets;
+    private int yogiRow = 0;
+    private int yogiCol = 0;
+    private int currentLevel = 1;
+    private int collectedBaskets = 0;
+    private EntityStore rangers;
+    private EntityStore trees;
+    private EntityStore mountains;
+    private OccupancyIndex index;
+    private final LevelGenerator generator;
+    private LevelGenerator.Layout layout;
+    private ExecutorService generatorThread;
+    private CompletableFuture<LevelGenerator.Layout> nextLevelLayout;
+    private CompletableFuture<LevelGenerator.Layout> retryLayout;
+    private long nextLevelSeed;
+    private long retrySeed;
+    private long transitions;
+    private long transitionWaits;
+    private long transitionNanos;
+    private long maxTransitionNanos;
+    private Difficulty difficulty = Difficulty.NORMAL;
+    private int lastLevel;
+    private int yogiLives = MAX_LIVES;
+    private int totalCollectedBaskets = 0;
+    private int layoutVersion;
+    private long tickCount;
+    private int ticksPerRangerMove = 1;
+    private long lastRangerMoveTick = -1;
+    private int pursuitPercent;
+    private int pursuitBudget = Integer.getInteger("yogi.pursuit.budget", 1 << 18);
+    private PursuitField pursuit;
+    private int[] proposedCells = new int[0];
+    private int[] claimedCells;
+    private int claimStamp;
+    private ForkJoinPool tickPool;
+
+    /**
+     * This is the constructor of the class.
+     * It creates a model with the given grid size and random seed and starts a new game.
+     *
+     * @param gridSize The number of cells on each side of the grid.
+     * @param seed     The seed of the random number generator.
+     */
+    public GameModel(int gridSize, long seed) {
+        if (gridSize < MIN_GRID_SIZE || gridSize > MAX_GRID_SIZE) {
+            throw new IllegalArgumentException("The grid size must be between " + MIN_GRID_SIZE + " and " + MAX_GRID_SIZE + ": " + gridSize);
+        }
+        this.gridSize = gridSize;
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.generator = new LevelGenerator(gridSize);
+        this.lastLevel = findLastLevel(difficulty);
+        this.pursuitPercent = difficulty.getPursuitPercent();
+        newGame();
+    }
+
+    /**
+     * This method is used to start a new game from the first level.
+     */
+    public void newGame() {
+        yogiLives = MAX_LIVES;
+        currentLevel = 1;
+        collectedBaskets = 0;
+        totalCollectedBaskets = 0;
+        initializeLevel();
+    }
+
+    /**
+     * This method is used to start a new game from the first level with a new seed.
+     * The tick count starts again from zero, so the game that follows depends only on the seed,
+     * the grid size, the difficulty and the tick settings, and not on the games played before.
+     *
+     * @param seed The new seed of the random number generator.
+     */
+    public void restart(long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
+        tickCount = 0;
+        newGame();
+    }
+
+    /**
+     * This method is used to start a new game from the given level.
+     *
+     * @param level The level that the game starts from.
+     * @throws IllegalArgumentException If the level does not fit into the grid.
+     */
+    public void setLevel(int level) {
+        if (level < 1 || level > lastLevel) {
+            throw new IllegalArgumentException("Level " + level + " does not fit into a " + gridSize + " x " + gridSize
+                    + " grid on " + difficulty + " difficulty. The last level is " + lastLevel + ".");
+        }
+        currentLevel = level;
+        totalCollectedBaskets = 0;
+        collectedBaskets = 0;
+        yogiLives = MAX_LIVES;
+        initializeLevel();
+    }
+
+    /**
+     * This method is used to change the difficulty and start a new game.
+     *
+     * @param difficulty The new difficulty.
+     * @throws IllegalArgumentException If not even the first level fits into the grid.
+     */
+    public void setDifficulty(Difficulty difficulty) {
+        int last = findLastLevel(difficulty);
+        if (last < 1) {
+            throw new IllegalArgumentException("A " + gridSize + " x " + gridSize + " grid is too small for "
+                    + difficulty + " difficulty.");
+        }
+        this.difficulty = difficulty;
+        this.lastLevel = last;
+        this.pursuitPercent = difficulty.getPursuitPercent();
+        newGame();
+    }
+
+    /**
+     * This method is used to find the last level whose entities fit into the grid.
+     * Rangers, trees and mountains need free cells outside the no spawn region,
+     * and the baskets need free cells anywhere but on the start cell of yogi.
+     *
+     * @param difficulty The difficulty that decides the number of entities.
+     * @return The last level that fits, or 0 if no level fits.
+     */
+    private int findLastLevel(Difficulty difficulty) {
+        long cells = (long) gridSize * gridSize;
+        long regionSize = Math.min(NO_SPAWN_REGION_SIZE, gridSize);
+        for (int level = MAX_LEVEL; level >= 1; level--) {
+            long placedOutsideRegion = difficulty.rangers(level, gridSize) + 2L * difficulty.obstacles(level, gridSize);
+            if (placedOutsideRegion <= cells - regionSize * regionSize
+                    && placedOutsideRegion + difficulty.baskets(level) <= cells - 1) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * This method is used to advance the game by one step.
+     * A step applies the input of the player and then runs one tick.
+     * The tick does not run if the input has already ended the level or cost a life.
+     *
+     * @param input The input of the player.
+     * @return The most important event of the step.
+     */
+    public Event step(Input input) {
+        Event event = moveYogi(input);
+        if (event == Event.LIFE_LOST || event == Event.LEVEL_COMPLETE
+                || event == Event.GAME_COMPLETE || event == Event.GAME_OVER) {
+            return event;
+        }
+        Event tickEvent = tick();
+        return tickEvent == Event.NONE ? event : tickEvent;
+    }
+
+    /**
+     * This method is used to advance the simulation by one tick.
+     * The rangers move once every ticksPerRangerMove ticks.
+     *
+     * @return The event caused by the rangers.
+     */
+    public Event tick() {
+        tickCount++;
+        if (pursuit != null) {
+            pursuit.advance(pursuitBudget);
+        }
+        if (tickCount % ticksPerRangerMove != 0) {
+            return Event.NONE;
+        }
+        lastRangerMoveTick = tickCount;
+        long start = System.nanoTime();
+        Event event = tickRangers();
+        GameMetrics.recordSince(GameMetrics.Path.RANGER_TICK, start);
+        return event;
+    }
+
+    /**
+     * This method is used to set how many ticks pass between two ranger moves.
+     *
+     * @param ticks The number of ticks, at least 1.
+     */
+    public void setTicksPerRangerMove(int ticks) {
+        ticksPerRangerMove = Math.max(1, ticks);
+    }
+
+    /**
+     * This method is used to set the chance that a ranger steps towards yogi instead of in a random direction.
+     * The difficulty sets it too.
+     *
+     * @param percent The chance in percent, from 0 for random steps only to 100 for pursuit only.
+     */
+    public void setPursuitPercent(int percent) {
+        pursuitPercent = Math.max(0, Math.min(100, percent));
+        if (pursuitPercent > 0 && pursuit == null) {
+            pursuit = new PursuitField(gridSize);
+            pursuit.reset(index, yogiRow, yogiCol);
+        }
+    }
+
+    /**
+     * This method is used to set how many cells the pursuit field may clear or expand in one tick.
+     *
+     * @param cells The number of cells.
+     */
+    public void setPursuitBudget(int cells) {
+        pursuitBudget = Math.max(1, cells);
+    }
+
+    /**
+     * This method is used to get the reachability check of the generated levels, which counts the rejected layouts.
+     *
+     * @return The reachability check.
+     */
+    public ReachabilityCheck getReachability() {
+        return generator.getReachability();
+    }
+
+    public long getRepairedLayouts() {
+        return generator.getRepairedLayouts();
+    }
+
+    public long getRegeneratedLayouts() {
+        return generator.getRegeneratedLayouts();
+    }
+
+    public int getPursuitBudget() {
+        return pursuitBudget;
+    }
+
+    public int getTicksPerRangerMove() {
+        return ticksPerRangerMove;
+    }
+
+    public int getPursuitPercent() {
+        return pursuitPercent;
+    }
+
+    /**
+     * This method is used to get the pursuit field.
+     *
+     * @return The pursuit field, or null if the rangers have never chased yogi.
+     */
+    public PursuitField getPursuitField() {
+        return pursuit;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * This method is used to check if the rangers moved in the last tick.
+     * The view only interpolates the rangers between their previous and current cells during that tick.
+     *
+     * @return True if the rangers moved in the last tick, false otherwise.
+     */
+    public boolean didRangersMoveLastTick() {
+        return lastRangerMoveTick == tickCount;
+    }
+
+    /**
+     * This method is used to initialize the level.
+     * The layout of the current level is generated at once with a seed from the random number generator of the model,
+     * and the layouts for the next level and for a retry of this level are prepared.
+     *
+     * @throws IllegalStateException If there are not enough free cells for the entities of the current level,
+     *                               or no layout with reachable baskets was found.
+     */
+    public void initializeLevel() {
+        if (currentLevel > lastLevel) {
+            throw new IllegalStateException("Level " + currentLevel + " does not fit into a " + gridSize + " x " + gridSize
+                    + " grid on " + difficulty + " difficulty.");
+        }
+        discardPendingLayouts();
+        long levelSeed = random.nextLong();
+        LevelGenerator.Layout next;
+        if (generatorThread == null) {
+            next = generator.generate(difficulty, currentLevel, levelSeed, pursuitPercent > 0);
+        } else {
+            next = awaitLayout(scheduleLayout(currentLevel, levelSeed));
+        }
+        enterLevel(next, true);
+    }
+
+    /**
+     * This method is used to start a level with a layout and to prepare the layouts that may follow it.
+     * A new level prepares the next level and a retry of itself, a retry only prepares the next retry,
+     * so the seeds of the layouts only depend on the order of the levels and lives.
+     *
+     * @param next     The layout of the level.
+     * @param newLevel True if the level has changed, false if the level is played again after a lost life.
+     */
+    private void enterLevel(LevelGenerator.Layout next, boolean newLevel) {
+        installLayout(next);
+        prepareFollowingLayouts(newLevel);
+    }
+
+    /**
+     * This method is used to draw the seeds of the layouts that may follow the current level and start generating them.
+     *
+     * @param newLevel True if the level has changed, false if the level is played again after a lost life.
+     */
+    private void prepareFollowingLayouts(boolean newLevel) {
+        if (newLevel) {
+            discard(nextLevelLayout);
+            nextLevelLayout = null;
+            if (currentLevel < lastLevel) {
+                nextLevelSeed = random.nextLong();
+                nextLevelLayout = scheduleLayout(currentLevel + 1, nextLevelSeed);
+            }
+        }
+        discard(retryLayout);
+        retrySeed = random.nextLong();
+        retryLayout = scheduleLayout(currentLevel, retrySeed);
+    }
+
+    /**
+     * This method is used to make a layout the current level.
+     * It only points the fields of the model at the stores of the layout, so it takes the same time for every level.
+     * The previous layout is handed back to the generator.
+     *
+     * @param next The layout.
+     */
+    private void installLayout(LevelGenerator.Layout next) {
+        LevelGenerator.Layout previous = layout;
+        layout = next;
+        rangers = next.rangers;
+        trees = next.trees;
+        mountains = next.mountains;
+        baskets = next.baskets;
+        index = next.index;
+
+        yogiRow = 0;
+        yogiCol = 0;
+        if (pursuitPercent > 0 && pursuit == null) {
+            pursuit = new PursuitField(gridSize);
+        }
+        if (pursuit != null) {
+            if (next.pursuitDistances != null) {
+                next.pursuitDistances = pursuit.install(index, next.pursuitDistances, yogiRow, yogiCol);
+            } else {
+                pursuit.reset(index, yogiRow, yogiCol);
+            }
+        }
+        lastRangerMoveTick = -1;
+        layoutVersion++;
+        if (previous != null) {
+            generator.recycle(previous);
+        }
+    }
+
+    /**
+     * This method is used to start generating a layout on the generator thread.
+     * A layout that is discarded before it is started is not generated, and a layout that is discarded
+     * while it is generated is handed back to the generator by the task itself, so no layout is lost.
+     *
+     * @param level The level.
+     * @param seed  The seed of the layout.
+     * @return The layout that is being generated, or null if there is no generator thread.
+     */
+    private CompletableFuture<LevelGenerator.Layout> scheduleLayout(int level, long seed) {
+        if (generatorThread == null) {
+            return null;
+        }
+        Difficulty layoutDifficulty = difficulty;
+        boolean layoutPursuit = pursuitPercent > 0;
+        CompletableFuture<LevelGenerator.Layout> pending = new CompletableFuture<>();
+        generatorThread.execute(() -> {
+            if (pending.isDone()) {
+                return;
+            }
+            try {
+                LevelGenerator.Layout layout = generator.generate(layoutDifficulty, level, seed, layoutPursuit);
+                if (!pending.complete(layout)) {
+                    generator.recycle(layout);
+                }
+            } catch (RuntimeException | Error e) {
+                pending.completeExceptionally(e);
+            }
+        });
+        return pending;
+    }
+
+    /**
+     * This method is used to switch to a prepared layout when a level is completed or a life is lost.
+     * Without a generator thread, or if the layout is not ready yet, the layout is generated or awaited here.
+     * The time until the layout is installed is counted in the transition statistics,
+     * the layouts that may follow are prepared after that.
+     *
+     * @param pending  The layout that is being generated, or null.
+     * @param level    The level of the layout.
+     * @param seed     The seed of the layout.
+     * @param newLevel True if the level has changed, false for a retry.
+     */
+    private void switchLayout(CompletableFuture<LevelGenerator.Layout> pending, int level, long seed, boolean newLevel) {
+        long start = System.nanoTime();
+        LevelGenerator.Layout next;
+        if (pending == null) {
+            next = generator.generate(difficulty, level, seed, pursuitPercent > 0);
+        } else {
+            if (!pending.isDone()) {
+                transitionWaits++;
+            }
+            next = awaitLayout(pending);
+        }
+        if (newLevel) {
+            nextLevelLayout = null;
+        } else {
+            retryLayout = null;
+        }
+        installLayout(next);
+        long nanos = GameMetrics.recordSince(GameMetrics.Path.LEVEL_TRANSITION, start);
+        transitions++;
+        transitionNanos += nanos;
+        maxTransitionNanos = Math.max(maxTransitionNanos, nanos);
+        prepareFollowingLayouts(newLevel);
+    }
+
+    /**
+     * This method is used to wait for a layout from the generator thread.
+     *
+     * @param pending The layout that is being generated.
+     * @return The layout.
+     * @throws IllegalStateException If the layout could not be generated.
+     */
+    private static LevelGenerator.Layout awaitLayout(CompletableFuture<LevelGenerator.Layout> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * This method is used to drop the prepared layouts, for example when a new game starts.
+     */
+    private void discardPendingLayouts() {
+        discard(nextLevelLayout);
+        discard(retryLayout);
+        nextLevelLayout = null;
+        retryLayout = null;
+    }
+
+    /**
+     * This method is used to drop a prepared layout.
+     * A finished layout is handed back to the generator here. Otherwise the layout is cancelled,
+     * and the task of scheduleLayout hands it back when it finishes.
+     *
+     * @param pending The layout that is being generated, or null.
+     */
+    private void discard(CompletableFuture<LevelGenerator.Layout> pending) {
+        if (pending != null && !pending.cancel(false) && !pending.isCompletedExceptionally()) {
+            generator.recycle(pending.join());
+        }
+    }
+
+    /**
+     * This method is used to choose whether the layouts of the next level and of a retry are generated on a
+     * background thread while the current level is played. The layouts are the same either way.
+     *
+     * @param enabled True to generate the layouts in the background, false to generate them when they are needed.
+     */
+    public void setBackgroundGeneration(boolean enabled) {
+        if (enabled == (generatorThread != null)) {
+            return;
+        }
+        discardPendingLayouts();
+        if (enabled) {
+            generatorThread = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "level-generator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            nextLevelLayout = currentLevel < lastLevel ? scheduleLayout(currentLevel + 1, nextLevelSeed) : null;
+            retryLayout = scheduleLayout(currentLevel, retrySeed);
+        } else {
+            generatorThread.shutdown();
+            try {
+                generatorThread.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            generatorThread = null;
+        }
+    }
+
+    public boolean isBackgroundGeneration() {
+        return generatorThread != null;
+    }
+
+    /**
+     * This method is used to describe the time the level transitions took.
+     *
+     * @return A one line summary of the transitions.
+     */
+    public String getTransitionStats() {
+        return String.format("Level transitions: %d, %.3f ms average, %.3f ms max, %d waited for the generator, %d layouts generated",
+                transitions, transitions == 0 ? 0 : transitionNanos / 1e6 / transitions, maxTransitionNanos / 1e6,
+                transitionWaits, generator.getGeneratedLayouts());
+    }
+
+    /**
+     * This method is used to move yogi one cell in the direction of the input.
+     * Yogi cannot leave the grid or walk into an obstacle.
+     * Walking next to a ranger costs a life, walking onto a basket collects it.
+     *
+     * @param input The input of the player.
+     * @return The event caused by the move.
+     */
+    public Event moveYogi(Input input) {
+        if (yogiLives <= 0 || input == Input.NONE) {
+            return Event.NONE;
+        }
+        int newYogiRow = yogiRow;
+        int newYogiCol = yogiCol;
+
+        switch (input) {
+            case UP:
+                newYogiRow = Math.max(0, newYogiRow - 1);
+                break;
+            case DOWN:
+                newYogiRow = Math.min(gridSize - 1, newYogiRow + 1);
+                break;
+            case LEFT:
+                newYogiCol = Math.max(0, newYogiCol - 1);
+                break;
+            case RIGHT:
+                newYogiCol = Math.min(gridSize - 1, newYogiCol + 1);
+                break;
+            default:
+                break;
+        }
+
+        if (index.isBlocked(newYogiRow, newYogiCol)) {
+            return Event.NONE;
+        }
+        yogiRow = newYogiRow;
+        yogiCol = newYogiCol;
+        if (pursuit != null) {
+            pursuit.setTarget(yogiRow, yogiCol);
+        }
+
+        if (checkRangerCollision(newYogiRow, newYogiCol)) {
+            return loseLife();
+        }
+
+        if (index.hasBasket(newYogiRow, newYogiCol)) {
+            index.removeBasket(newYogiRow, newYogiCol);
+            baskets.remove(baskets.indexOf(newYogiRow, newYogiCol));
+            collectedBaskets++;
+            if (baskets.size() == 0) {
+                return completeLevel();
+            }
+            return Event.BASKET_COLLECTED;
+        }
+        return Event.MOVED;
+    }
+
+    /**
+     * This method is used to move every ranger one cell.
+     * With the chance of the pursuit percentage a ranger steps towards yogi along the pursuit field,
+     * otherwise, or if no step brings it closer, it steps in a random direction.
+     * A ranger does not move into an obstacle.
+     * A ranger stepping next to yogi costs a life.
+     * <p>
+     * Every ranger first proposes a move from the positions at the start of the tick, using random bits
+     * derived from one draw of the random number generator and its own number, so the proposals do not
+     * depend on each other and can be made on several threads. If several rangers want to enter the same cell,
+     * the ranger with the lowest number enters it and the others stay. The moves are then applied in order,
+     * so the result is the same for any number of threads.
+     *
+     * @return The event caused by the rangers.
+     */
+    public Event tickRangers() {
+        rangers.copyColumn(EntityStore.ROW, PREVIOUS_ROW);
+        rangers.copyColumn(EntityStore.COL, PREVIOUS_COL);
+        if (yogiLives <= 0) {
+            return Event.NONE;
+        }
+        long tickSeed = random.nextLong();
+        int numRangers = rangers.size();
+        if (proposedCells.length < numRangers) {
+            proposedCells = new int[numRangers];
+        }
+        if (tickPool != null && numRangers >= 2 * PARALLEL_TICK_CHUNK) {
+            tickPool.invoke(new ProposeMovesTask(tickSeed, 0, numRangers));
+        } else {
+            proposeMoves(tickSeed, 0, numRangers);
+        }
+        return applyMoves();
+    }
+
+    /**
+     * This method is used to propose the moves of a range of rangers.
+     * It only reads the state of the model and writes the proposals of its own rangers.
+     *
+     * @param tickSeed The random draw of the tick.
+     * @param from     The first ranger.
+     * @param to       One after the last ranger.
+     */
+    private void proposeMoves(long tickSeed, int from, int to) {
+        for (int i = from; i < to; i++) {
+            long bits = mix(tickSeed + (i + 1L) * GOLDEN_GAMMA);
+            int direction = -1;
+            if (pursuitPercent >= 100 || (pursuitPercent > 0 && (int) ((bits >>> 33) % 100) < pursuitPercent)) {
+                direction = pursuit.nextStep(rangers.getRow(i), rangers.getCol(i));
+            }
+            if (direction < 0) {
+                direction = (int) (bits & 3);
+            }
+            int newRangerRow = rangers.getRow(i);
+            int newRangerCol = rangers.getCol(i);
+
+            switch (direction) {
+                case 0:
+                    newRangerRow = Math.max(0, newRangerRow - 1);
+                    break;
+                case 1:
+                    newRangerRow = Math.min(gridSize - 1, newRangerRow + 1);
+                    break;
+                case 2:
+                    newRangerCol = Math.max(0, newRangerCol - 1);
+                    break;
+                case 3:
+                    newRangerCol = Math.min(gridSize - 1, newRangerCol + 1);
+                    break;
+            }
+
+            boolean moves = !index.isBlocked(newRangerRow, newRangerCol)
+                    && (newRangerRow != rangers.getRow(i) || newRangerCol != rangers.getCol(i));
+            proposedCells[i] = moves ? newRangerRow * gridSize + newRangerCol : -1;
+        }
+    }
+
+    /**
+     * This method is used to apply the proposed moves in the order of the rangers.
+     * A cell that has already been entered by a ranger with a lower number in this tick is not entered again.
+     *
+     * @return LIFE_LOST or GAME_OVER if a ranger stepped next to yogi, NONE otherwise.
+     */
+    private Event applyMoves() {
+        if (claimedCells == null) {
+            claimedCells = new int[gridSize * gridSize];
+        }
+        if (++claimStamp == Integer.MAX_VALUE) {
+            Arrays.fill(claimedCells, 0);
+            claimStamp = 1;
+        }
+        for (int i = 0; i < rangers.size(); i++) {
+            int cell = proposedCells[i];
+            if (cell < 0 || claimedCells[cell] == claimStamp) {
+                continue;
+            }
+            claimedCells[cell] = claimStamp;
+            int newRangerRow = cell / gridSize;
+            int newRangerCol = cell % gridSize;
+            index.moveRanger(rangers.getRow(i), rangers.getCol(i), newRangerRow, newRangerCol);
+            rangers.setCell(i, newRangerRow, newRangerCol);
+        }
+        return checkRangerCollision(yogiRow, yogiCol) ? loseLife() : Event.NONE;
+    }
+
+    /**
+     * This method is used to turn a number into well mixed random bits, as SplitMix64 does.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * This class is used to propose the moves of the rangers on the threads of the tick pool.
+     * The rangers are split in halves until a part is at most PARALLEL_TICK_CHUNK rangers.
+     */
+    private final class ProposeMovesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final long tickSeed;
+        private final int from;
+        private final int to;
+
+        ProposeMovesTask(long tickSeed, int from, int to) {
+            this.tickSeed = tickSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_TICK_CHUNK) {
+                proposeMoves(tickSeed, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ProposeMovesTask(tickSeed, from, middle), new ProposeMovesTask(tickSeed, middle, to));
+            }
+        }
+    }
+
+    /**
+     * This method is used to choose how many threads propose the ranger moves.
+     * The result of a tick does not depend on the number of threads.
+     *
+     * @param threads The number of threads, 1 to propose the moves on the calling thread.
+     */
+    public void setTickThreads(int threads) {
+        if (tickPool != null) {
+            tickPool.shutdown();
+            tickPool = null;
+        }
+        if (threads > 1) {
+            tickPool = new ForkJoinPool(threads);
+        }
+    }
+
+    public int getTickThreads() {
+        return tickPool == null ? 1 : tickPool.getParallelism();
+    }
+
+    /**
+     * This method is used to take a life from yogi.
+     * If yogi has lives left, the level starts again with the prepared retry layout.
+     *
+     * @return LIFE_LOST if yogi has lives left, GAME_OVER otherwise.
+     */
+    private Event loseLife() {
+        yogiLives--;
+        collectedBaskets = 0;
+        if (yogiLives <= 0) {
+            return Event.GAME_OVER;
+        }
+        switchLayout(retryLayout, currentLevel, retrySeed, false);
+        return Event.LIFE_LOST;
+    }
+
+    /**
+     * This method is used to finish the current level.
+     * The collected baskets are added to the total and the next level starts with the prepared layout.
+     *
+     * @return LEVEL_COMPLETE if there is a next level, GAME_COMPLETE after the last level that fits into the grid.
+     */
+    private Event completeLevel() {
+        totalCollectedBaskets += collectedBaskets;
+        collectedBaskets = 0;
+        if (currentLevel < lastLevel) {
+            currentLevel++;
+            switchLayout(nextLevelLayout, currentLevel, nextLevelSeed, true);
+            return Event.LEVEL_COMPLETE;
+        }
+        return Event.GAME_COMPLETE;
+    }
+
+    /**
+     * This method is used to check if there is a ranger collision.
+     * A ranger on one of the 8 neighbours of the cell collides with yogi.
+     *
+     * @param newYogiRow The new row of the yogi.
+     * @param newYogiCol The new column of the yogi.
+     * @return True if there is a ranger collision, false otherwise.
+     */
+    public boolean checkRangerCollision(int newYogiRow, int newYogiCol) {
+        return index.isDangerous(newYogiRow, newYogiCol);
+    }
+
+    /**
+     * This method is used to check if there is a yogi collision.
+     * The offset of the ranger from yogi picks a bit of a 3 x 3 mask of the neighbours of yogi,
+     * and an offset outside the mask wraps around to a large unsigned number.
+     *
+     * @param newRangerRow The new row of the ranger.
+     * @param newRangerCol The new column of the ranger.
+     * @return True if there is a yogi collision, false otherwise.
+     */
+    public boolean checkYogiCollision(int newRangerRow, int newRangerCol) {
+        int row = newRangerRow - yogiRow + 1;
+        int col = newRangerCol - yogiCol + 1;
+        return Integer.compareUnsigned(row, 3) < 0 && Integer.compareUnsigned(col, 3) < 0
+                && (NEIGHBOUR_MASK >>> (row * 3 + col) & 1) != 0;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getYogiRow() {
+        return yogiRow;
+    }
+
+    public int getYogiCol() {
+        return yogiCol;
+    }
+
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    public int getLastLevel() {
+        return lastLevel;
+    }
+
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+
+    public int getYogiLives() {
+        return yogiLives;
+    }
+
+    public int getCollectedBaskets() {
+        return collectedBaskets;
+    }
+
+    public int getTotalCollectedBaskets() {
+        return totalCollectedBaskets;
+    }
+
+    public int getNumRangers() {
+        return rangers.size();
+    }
+
+    public int getRangerRow(int i) {
+        return rangers.getRow(i);
+    }
+
+    public int getRangerCol(int i) {
+        return rangers.getCol(i);
+    }
+
+    public int getPreviousRangerRow(int i) {
+        return rangers.get(PREVIOUS_ROW, i);
+    }
+
+    public int getPreviousRangerCol(int i) {
+        return rangers.get(PREVIOUS_COL, i);
+    }
+
+    public int getNumTrees() {
+        return trees.size();
+    }
+
+    public int getTreeRow(int i) {
+        return trees.getRow(i);
+    }
+
+    public int getTreeCol(int i) {
+        return trees.getCol(i);
+    }
+
+    public int getNumMountains() {
+        return mountains.size();
+    }
+
+    public int getMountainRow(int i) {
+        return mountains.getRow(i);
+    }
+
+    public int getMountainCol(int i) {
+        return mountains.getCol(i);
+    }
+
+    /**
+     * This method is used to get the number of baskets that are left on the level.
+     * A collected basket is removed, so the baskets that are left are numbered from 0 and their order may change.
+     *
+     * @return The number of baskets left.
+     */
+    public int getNumBaskets() {
+        return baskets.size();
+    }
+
+    public int getBasketRow(int i) {
+        return baskets.getRow(i);
+    }
+
+    public int getBasketCol(int i) {
+        return baskets.getCol(i);
+    }
+
+    public boolean isObstacle(int row, int col) {
+        return index.isBlocked(row, col);
+    }
+
+    /**
+     * This method is used to get the kind of obstacle on a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return TREE, MOUNTAIN or NO_OBSTACLE.
+     */
+    public byte getObstacle(int row, int col) {
+        return index.getObstacle(row, col);
+    }
+
+    public boolean hasRanger(int row, int col) {
+        return index.hasRanger(row, col);
+    }
+
+    public boolean hasBasket(int row, int col) {
+        return index.hasBasket(row, col);
+    }
+
+    /**
+     * This method is used to compute a checksum of the state of the game.
+     * It covers the tick count, yogi, the score, the lives, the level and every ranger and basket,
+     * so a replay that takes a different turn is noticed at the first tick where the state differs.
+     *
+     * @return The checksum.
+     */
+    public int checksum() {
+        long hash = tickCount;
+        hash = hash * 31 + yogiRow * (long) gridSize + yogiCol;
+        hash = hash * 31 + yogiLives;
+        hash = hash * 31 + currentLevel;
+        hash = hash * 31 + collectedBaskets;
+        hash = hash * 31 + totalCollectedBaskets;
+        for (int i = 0; i < rangers.size(); i++) {
+            hash = hash * 31 + rangers.getRow(i) * (long) gridSize + rangers.getCol(i);
+        }
+        for (int i = 0; i < baskets.size(); i++) {
+            hash = hash * 31 + baskets.getRow(i) * (long) gridSize + baskets.getCol(i);
+        }
+        hash = mix(hash);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * This method is used to get the version of the level layout.
+     * The version changes every time a level is generated, so the view knows when to redraw the obstacles.
+     *
+     * @return The layout version.
+     */
+    public int getLayoutVersion() {
+        return layoutVersion;
+    }
+}
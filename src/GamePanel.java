@@ -1,511 +1,956 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.*;
 
 
 
 /**
  * This class is used to create the game panel.
+ * It draws the GameModel and turns key presses and the ticks of the GameLoop into model steps.
  */
 
-class GamePanel extends JPanel implements KeyListener {
-    public JLabel stats;
-    private volatile boolean allowRangerMovement;
-    private static final int GRID_SIZE = 20;
-    private static final int CELL_SIZE = 27;
-    private static final int YOGI_SIZE = 24;
-    private int NUM_BASKETS;
-    private int[] basketRows;
-    private int[] basketCols;
-    private int yogiRow = 0;
-    private int yogiCol = 0;
-    private int currentLevel = 1;
-    private int collectedBaskets = 0;
-    private int numRangers;
-    private int numTrees;
-    private int numMountains;
-    private int[] rangerRows;
-    private int[] rangerCols;
-    private int[] treeRows;
-    private int[] treeCols;
-    private int[] mountainRows;
-    private int[] mountainCols;
-    private boolean[][] obstacleGrid;
-    private Random random = new Random();
-    private int yogiLives = 3;
-    private int totalCollectedBaskets = 0;
-    private static final int NO_SPAWN_REGION_SIZE = 3;
-    private ImageIcon backgroundImage;
-    private Timer timer;
-    private int elapsedTime;
-    private Timer rangerMovementTimer;
+class GamePanel extends JPanel implements KeyListener, GameLoop.Listener {
+    static final int CELL_SIZE = 27;
+    static final int YOGI_SIZE = 24;
+    static final int MIN_CELL_SIZE = 8;
+    static final int MAX_CELL_SIZE = 64;
+    private static final int CHUNK_CELLS = 16;
+    private static final int MIN_CACHED_CHUNKS = 16;
+    private static final long CHUNK_PIXEL_BUDGET = 16L * 1024 * 1024;
+    private static final int BACKGROUND_TILE_CELLS = GameModel.DEFAULT_GRID_SIZE;
+    private static final String BACKGROUND_IMAGE = "assets/yellowst1.jpg";
+    private static final String YOGI_IMAGE = "assets/yogi.png";
+    private static final String RANGER_IMAGE = "assets/SpongeRanger.png";
+    private static final String TREE_IMAGE = "assets/tree.png";
+    private static final String MOUNTAIN_IMAGE = "assets/mountain.png";
+    private static final String BASKET_IMAGE = "assets/honeyPot.png";
+    private static final String[] SPRITE_IMAGES = {YOGI_IMAGE, RANGER_IMAGE, TREE_IMAGE, MOUNTAIN_IMAGE, BASKET_IMAGE};
+    private static final int RANGER_MOVE_MILLIS = 1000;
+    private static final int INTERPOLATED_RANGER_LIMIT = 256;
+    private static final long METRICS_REFRESH_NANOS = 250_000_000L;
+    private static final Rectangle METRICS_BOUNDS = new Rectangle(4, 4, 262, 90);
+    private static final Color METRICS_BACKGROUND = new Color(0, 0, 0, 160);
+    private static final Font METRICS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Font HUD_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 10);
+    private static final int INPUT_QUEUE_CAPACITY = 16;
+    private static final int MIN_NAME_LENGTH = 3;
+    private static final int MAX_NAME_LENGTH = 20;
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170);
+    private static final Font OVERLAY_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 16);
+    private static final Font OVERLAY_PROMPT_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private final GameModel model;
+    private final GameLoop loop;
+    private ScoreWriter scoreWriter;
+    private LeaderboardCache leaderboard;
+    private SessionRecorder recorder;
+    private SessionReplay replay;
+    private double renderAlpha;
+    private boolean interpolating;
+    private long shownSeconds = -1;
+    private final SpriteCache sprites;
+    private final Hud hud;
+    private final InputQueue inputs;
+    private GameState state = GameState.PLAYING;
+    private String[] overlayLines = new String[0];
+    private final StringBuilder playerName = new StringBuilder();
+    private boolean nameRejected;
+    private int cellSize = CELL_SIZE;
+    private int spriteSize = YOGI_SIZE;
+    private int chunkLayoutVersion = -1;
+    private int shownLayoutVersion;
+    private boolean showMetrics = Boolean.getBoolean("yogi.metricsOverlay");
+    private long metricsShownNanos;
+
+    /**
+     * The cached chunks of the static layer, evicted least recently used first
+     * when they need more pixels than CHUNK_PIXEL_BUDGET.
+     */
+    private final Map<Long, BufferedImage> chunks = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            long chunkPixels = (long) (CHUNK_CELLS * cellSize + 1) * (CHUNK_CELLS * cellSize + 1);
+            return size() > Math.max(MIN_CACHED_CHUNKS, CHUNK_PIXEL_BUDGET / chunkPixels);
+        }
+    };
 
     /**
      * This is the constructor of the class.
      * It creates a new JPanel object and adds a background image to it.
      * It also adds a KeyListener to the panel.
      *
-     * @param gui The YogiBearGUI object that is used to access the stats JLabel.
+     * @param assets The loader that has decoded the images.
+     */
+    public GamePanel(AssetLoader assets) {
+        this(new GameModel(Integer.getInteger("yogi.gridSize", GameModel.DEFAULT_GRID_SIZE), new Random().nextLong()),
+                new SpriteCache(assets));
+        String recording = System.getProperty("yogi.record");
+        if (recording != null) {
+            startRecording(new File(recording));
+        }
+    }
+
+    /**
+     * This is the constructor of the class that draws the given model.
+     * It does not need a window, so the panel can also be painted into an offscreen image.
+     *
+     * @param model The model that the panel draws.
+     */
+    GamePanel(GameModel model) {
+        this(model, new SpriteCache());
+    }
+
+    /**
+     * This is the constructor of the class that draws the given model with the given sprites.
+     *
+     * @param model   The model that the panel draws.
+     * @param sprites The cache of the sprites.
      */
-    public GamePanel(YogiBearGUI gui) {
+    GamePanel(GameModel model, SpriteCache sprites) {
+        this.sprites = sprites;
+        this.hud = new Hud(HUD_FONT, getFontMetrics(HUD_FONT));
         addKeyListener(this);
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                inputs.releaseAll();
+            }
+        });
         setFocusable(true);
         setFocusTraversalKeysEnabled(false);
-        backgroundImage = new ImageIcon("assets/yellowst1.jpg");
-        stats = gui.stats;
+        addMouseWheelListener(e -> setCellSize(e.getWheelRotation() < 0 ? zoomIn(cellSize) : zoomOut(cellSize)));
+        this.model = model;
+        int ticksPerSecond = Integer.getInteger("yogi.tickRate", 10);
+        model.setTicksPerRangerMove(ticksPerSecond * RANGER_MOVE_MILLIS / 1000);
+        model.setTickThreads(Integer.getInteger("yogi.tickThreads", 1));
+        model.setBackgroundGeneration(Boolean.parseBoolean(System.getProperty("yogi.pregenerate", "true")));
+        inputs = new InputQueue(INPUT_QUEUE_CAPACITY,
+                millisToTicks(Integer.getInteger("yogi.keyRepeatDelay", 250), ticksPerSecond),
+                millisToTicks(Integer.getInteger("yogi.keyRepeatInterval", 100), ticksPerSecond));
+        loop = new GameLoop(ticksPerSecond, Integer.getInteger("yogi.frameRate", 60), this);
+        prescaleSprites();
         initializeGame();
     }
 
-    /**
-     * The ActionListener for the game timer.
-     * This listener is responsible for updating the elapsed time and game statistics
-     * each time the timer fires an action event.
-     */
-    private ActionListener timerAction = new ActionListener() {
-        @Override
-        public void actionPerformed(ActionEvent e) {
-            elapsedTime++;
-            updateStats();
-        }
-    };
-
     /**
      * This method is used to save the score to the database.
+     * The score is handed to the background writer, so the game does not wait for the score store,
+     * and added to the leaderboard cache, so the high score table shows it right away.
      *
      * @param playerName The name of the player.
      * @param score      The score of the player.
      * @param time       The time taken by the player to complete the game.
      */
     private void saveScoreToDatabase(String playerName, int score, int time) {
-        String url = "jdbc:mysql://localhost:3306/highscores";
-        String user = "root";
-        String password = "salam123";
-
-        try (Connection connection = DriverManager.getConnection(url, user, password)) {
-            String sql = "INSERT INTO scores (player_name, score, time) VALUES (?, ?, ?)";
-            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
-                preparedStatement.setString(1, playerName);
-                preparedStatement.setInt(2, score);
-                preparedStatement.setInt(3, time);
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    System.out.println("Score saved to the database successfully.");
-                } else {
-                    System.out.println("Failed to save score to the database.");
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        ScoreEntry entry = new ScoreEntry(playerName, score, time);
+        if (scoreWriter != null) {
+            scoreWriter.submit(entry);
+        } else {
+            System.out.println("No score writer, score not saved: " + entry);
+        }
+        if (leaderboard != null) {
+            leaderboard.recordScore(entry);
         }
     }
 
     /**
-     * This method is used to update the game statistics.
+     * This method is used to set the writer that saves the scores.
+     *
+     * @param scoreWriter The score writer.
      */
-    public void updateStats() {
-        stats.setText("Collected Baskets: " + collectedBaskets + " | Total Collected Baskets: " +
-                totalCollectedBaskets + " | Level: " + currentLevel + " | Rangers: " +
-                numRangers + " | Lives: " + yogiLives + " | Time: " + elapsedTime + " seconds");
+    public void setScoreWriter(ScoreWriter scoreWriter) {
+        this.scoreWriter = scoreWriter;
     }
 
     /**
-     * This method is used to check if the level is complete.
-     * If the level is complete, it will stop the timer and show a message to the user.
-     * If the user has completed all levels, it will show a message to the user and restart the game.
-     * Additionally, it will save the score to the database.
+     * This method is used to set the leaderboard cache that the saved scores are added to.
+     *
+     * @param leaderboard The leaderboard cache.
      */
-    private void isLevelComplete() {
-        if (collectedBaskets == NUM_BASKETS) {
-            allowRangerMovement = false;
-            timer.stop();
-            if (currentLevel != 10) {
-                JOptionPane.showMessageDialog(this, "Level " + currentLevel + " Complete!\nPlease click \"OK\" to procede to Level " + (currentLevel + 1) + "...");
-            }
-            totalCollectedBaskets += collectedBaskets;
-            collectedBaskets = 0;
-            updateStats();
-            if (currentLevel < 10) {
-                currentLevel++;
-                initializeLevel();
-                timer.start();
-            } else {
-                timer.stop();
-                JOptionPane.showMessageDialog(this, "Congratulations! You've completed all levels! "
-                        + "\nTotal Collected Baskets: " + totalCollectedBaskets
-                        + "\nRemaining Lives: " + yogiLives
-                        + "\nElapsed Time: " + elapsedTime + " seconds"
-                        + "\nPlease click \"OK\" to restart the game.");
-                saveScoreToDatabase();
-                initializeGame();
-            }
-        }
+    public void setLeaderboard(LeaderboardCache leaderboard) {
+        this.leaderboard = leaderboard;
     }
 
     /**
-     * This method is used to save the score to the database.
-     * It will ask the user to enter their name and save the score to the database.
-     */
-    private void saveScoreToDatabase() {
-        String playerName = null;
-        while (playerName == null || playerName.trim().isEmpty() || playerName.trim().length() < 3) {
-            playerName = JOptionPane.showInputDialog(this, "Enter your name:");
-            if (playerName == null) {
-                // if user clicks cancel
-                break;
-            }
-            if (playerName.trim().isEmpty() || playerName.trim().length() < 3) {
-                JOptionPane.showMessageDialog(this, "Please enter a name with at least 3 characters.");
-            }
-        }
-        // Save score to the database
-        if (playerName != null) {
-            saveScoreToDatabase(playerName, totalCollectedBaskets, elapsedTime);
+     * This method is used to start a new game and record it into a file.
+     * The game is restarted with the seed from -Dyogi.seed or a random one, so the recording can be replayed
+     * with the SessionReplay from its first tick.
+     *
+     * @param file The file to record into.
+     */
+    public void startRecording(File file) {
+        loop.stop();
+        stopRecording();
+        model.restart(Long.getLong("yogi.seed", new Random().nextLong()));
+        interpolating = false;
+        try {
+            recorder = new SessionRecorder(file, model, loop.getTicksPerSecond());
+            System.out.println("Recording the session into " + file + " with seed " + model.getSeed());
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+        loop.resetClock();
+        loop.start();
+        updateStats();
+        handleEvent(GameModel.Event.NONE);
     }
 
+    /**
+     * This method is used to end the recording, if the session is being recorded.
+     */
+    public void stopRecording() {
+        if (recorder != null) {
+            recorder.close(model);
+            recorder = null;
+        }
+    }
 
     /**
-     * This method is used to set the level from the menu.
+     * This method is used to show a recorded session instead of playing.
+     * The keys no longer move yogi, and the messages of the game are not shown.
      *
-     * @param level The level that the user has selected from the menu.
+     * @param replay The replay, which has not been started yet.
      */
-    public void setLevelFromMenu(int level) {
-        currentLevel = level;
-        totalCollectedBaskets = 0;
-        collectedBaskets = 0;
-        yogiLives = 3;
-        elapsedTime = 0;
+    public void startReplay(SessionReplay replay) {
+        loop.stop();
+        stopRecording();
+        this.replay = replay;
+        setState(GameState.PLAYING);
+        replay.prepare(model);
+        interpolating = false;
+        loop.resetClock();
+        loop.start();
         updateStats();
-        initializeLevel();
+        handleEvent(GameModel.Event.NONE);
+        repaint();
     }
 
-
     /**
-     * This method is used to initialize the level.
-     * It will initialize the number of rangers, trees, mountains, and baskets.
-     * It will also initialize the ranger, tree, mountain, and basket positions.
-     * It will also initialize the obstacle grid.
-     * It will also initialize the yogi position.
+     * This method is used to stop the replay and show why it stopped.
+     *
+     * @param message The reason.
      */
-    private void initializeLevel() {
-        numRangers = currentLevel;
-        numTrees = currentLevel;
-        numMountains = currentLevel;
-        NUM_BASKETS = currentLevel * 2;
+    private void stopReplay(String message) {
+        loop.stop();
+        try {
+            replay.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        System.out.println(message);
+        setState(GameState.REPLAY_ENDED, message);
+    }
 
-        rangerRows = new int[numRangers];
-        rangerCols = new int[numRangers];
+    /**
+     * This method is used to update the game statistics in the HUD.
+     * Only the fields whose values have changed are repainted.
+     */
+    public void updateStats() {
+        shownSeconds = loop.getElapsedMillis() / 1000;
+        updateHud(Hud.Field.BASKETS, model.getCollectedBaskets());
+        updateHud(Hud.Field.TOTAL, model.getTotalCollectedBaskets());
+        updateHud(Hud.Field.LEVEL, model.getCurrentLevel());
+        updateHud(Hud.Field.RANGERS, model.getNumRangers());
+        updateHud(Hud.Field.LIVES, model.getYogiLives());
+        updateHud(Hud.Field.TIME, shownSeconds);
+    }
 
-        treeRows = new int[numTrees];
-        treeCols = new int[numTrees];
+    private void updateHud(Hud.Field field, long value) {
+        if (hud.set(field, value)) {
+            repaint(hud.getX(field), getHeight() - hud.getHeight(), hud.getWidth(field), hud.getHeight());
+        }
+    }
 
-        mountainRows = new int[numMountains];
-        mountainCols = new int[numMountains];
+    public Hud getHud() {
+        return hud;
+    }
 
-        obstacleGrid = new boolean[GRID_SIZE][GRID_SIZE];
-        allowRangerMovement = true;
+    /**
+     * This method is used to format the elapsed time of the game to the millisecond.
+     *
+     * @return The elapsed time, for example "12.345 seconds".
+     */
+    private String formatElapsedTime() {
+        long millis = loop.getElapsedMillis();
+        return String.format("%d.%03d seconds", millis / 1000, millis % 1000);
+    }
 
-        spawnRangers();
-        spawnObstacles(numTrees, treeRows, treeCols);
-        spawnObstacles(numMountains, mountainRows, mountainCols);
-        spawnBaskets();
+    /**
+     * This method is used to react to an event of the model.
+     * It updates the statistics, repaints the panel if the model has generated a new level,
+     * and moves to the state that shows the message of the event.
+     *
+     * @param event The event returned by the model.
+     */
+    private void handleEvent(GameModel.Event event) {
+        if (event != GameModel.Event.NONE && event != GameModel.Event.MOVED) {
+            updateStats();
+        }
+        if (replay != null) {
+            event = GameModel.Event.NONE;
+        }
+        switch (event) {
+            case LIFE_LOST:
+                setState(GameState.LIFE_LOST, "Yogi Bear lost a life!", "Remaining lives: " + model.getYogiLives());
+                break;
+            case GAME_OVER:
+                setState(GameState.GAME_OVER, "Game Over!", "Yogi Bear has run out of lives.",
+                        "Total Collected Baskets: " + model.getTotalCollectedBaskets(),
+                        "Elapsed Time: " + formatElapsedTime());
+                break;
+            case LEVEL_COMPLETE:
+                setState(GameState.LEVEL_COMPLETE, "Level " + (model.getCurrentLevel() - 1) + " Complete!",
+                        "Next is level " + model.getCurrentLevel() + ".");
+                break;
+            case GAME_COMPLETE:
+                setState(GameState.GAME_COMPLETE, "Congratulations!", "You've completed all levels!",
+                        "Total Collected Baskets: " + model.getTotalCollectedBaskets(),
+                        "Remaining Lives: " + model.getYogiLives(),
+                        "Elapsed Time: " + formatElapsedTime());
+                break;
+            default:
+                break;
+        }
+        if (model.getLayoutVersion() != shownLayoutVersion) {
+            shownLayoutVersion = model.getLayoutVersion();
+            repaint();
+        }
+    }
 
-        yogiRow = 0;
-        yogiCol = 0;
+    /**
+     * This method is used to move to another state.
+     * The simulation is paused in every state but PLAYING, the frames go on and the message is drawn over the game.
+     * Moves that were queued before the state changed are dropped.
+     *
+     * @param newState The new state.
+     * @param lines    The lines of the message.
+     */
+    private void setState(GameState newState, String... lines) {
+        state = newState;
+        overlayLines = lines;
+        loop.setPaused(newState != GameState.PLAYING);
+        inputs.clear();
+        repaint();
+    }
 
-        updateStats();
+    public GameState getState() {
+        return state;
     }
 
     /**
-     * This method is used to spawn the baskets.
+     * This method is used to leave a message state with the key that confirms it.
+     * After the last life or the last level, the player is asked for a name for the high score table.
      */
-    private void spawnBaskets() {
-        basketRows = new int[NUM_BASKETS];
-        basketCols = new int[NUM_BASKETS];
-
-        for (int i = 0; i < NUM_BASKETS; i++) {
-            int basketRow, basketCol;
-            do {
-                basketRow = random.nextInt(GRID_SIZE);
-                basketCol = random.nextInt(GRID_SIZE);
-            } while (obstacleGrid[basketRow][basketCol] || isRangerPosition(basketRow, basketCol) || isBasketPosition(basketRow, basketCol));
+    private void confirmState() {
+        switch (state) {
+            case LIFE_LOST:
+            case LEVEL_COMPLETE:
+                setState(GameState.PLAYING);
+                break;
+            case GAME_OVER:
+            case GAME_COMPLETE:
+                playerName.setLength(0);
+                nameRejected = false;
+                setState(GameState.ENTERING_NAME, "Enter your name:", "");
+                break;
+            default:
+                break;
+        }
+    }
 
-            basketRows[i] = basketRow;
-            basketCols[i] = basketCol;
+    /**
+     * This method is used to handle a key while the player enters a name.
+     * Enter saves the score if the name has at least MIN_NAME_LENGTH characters, Escape skips saving,
+     * and both start a new game.
+     *
+     * @param e The KeyEvent object.
+     */
+    private void enterNameKey(KeyEvent e) {
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_ENTER:
+                String name = playerName.toString().trim();
+                if (name.length() < MIN_NAME_LENGTH) {
+                    nameRejected = true;
+                    overlayLines[1] = playerName.toString();
+                    repaint();
+                    return;
+                }
+                saveScoreToDatabase(name, model.getTotalCollectedBaskets(), (int) (loop.getElapsedMillis() / 1000));
+                initializeGame();
+                break;
+            case KeyEvent.VK_ESCAPE:
+                initializeGame();
+                break;
+            case KeyEvent.VK_BACK_SPACE:
+                if (playerName.length() > 0) {
+                    playerName.setLength(playerName.length() - 1);
+                    overlayLines[1] = playerName.toString();
+                    repaint();
+                }
+                break;
+            default:
+                break;
         }
     }
 
     /**
-     * This method is used to check if the position is a basket position.
+     * This method is used to set the level from the menu.
      *
-     * @param row The row of the position.
-     * @param col The column of the position.
-     * @return True if the position is a basket position, false otherwise.
+     * @param level The level that the user has selected from the menu.
      */
-    private boolean isBasketPosition(int row, int col) {
-        for (int i = 0; i < NUM_BASKETS; i++) {
-            if (basketRows[i] == row && basketCols[i] == col) {
-                return true;
-            }
+    public void setLevelFromMenu(int level) {
+        try {
+            model.setLevel(level);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage());
+            return;
+        }
+        if (recorder != null) {
+            recorder.recordLevel(model, level);
         }
-        return false;
+        loop.resetClock();
+        setState(GameState.PLAYING);
+        updateStats();
+        handleEvent(GameModel.Event.NONE);
     }
 
     /**
-     * This method is used to check if the position is a ranger position.
+     * This method is used to set the difficulty from the menu and restart the game.
      *
-     * @param row The row of the position.
-     * @param col The column of the position.
-     * @return True if the position is a ranger position, false otherwise.
+     * @param difficulty The difficulty that the user has selected from the menu.
+     * @return True if the difficulty fits into the world, false otherwise.
+     */
+    public boolean setDifficultyFromMenu(Difficulty difficulty) {
+        try {
+            model.setDifficulty(difficulty);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage());
+            return false;
+        }
+        if (recorder != null) {
+            recorder.recordDifficulty(model, difficulty);
+        }
+        initializeGame();
+        return true;
+    }
+
+    /**
+     * This method is used to run one simulation tick of the game loop.
+     * It repaints the cells of the rangers that moved and updates the statistics when the shown second changes.
+     * While a session is recorded, the checksum of the model is recorded after every tick that moved the rangers.
+     * The move of the player from the input queue, or during a replay the recorded inputs of the tick,
+     * are applied before the rangers move.
      */
-    private boolean isRangerPosition(int row, int col) {
-        for (int i = 0; i < numRangers; i++) {
-            if (rangerRows[i] == row && rangerCols[i] == col) {
-                return true;
+    @Override
+    public void tick() {
+        if (interpolating) {
+            repaintMovedRangers();
+        }
+        if (replay != null) {
+            if (!applyReplay()) {
+                return;
+            }
+        } else {
+            applyInput();
+            if (state != GameState.PLAYING) {
+                return;
             }
         }
-        return false;
+        int layoutVersion = model.getLayoutVersion();
+        GameModel.Event event = model.tick();
+        if (recorder != null && (model.didRangersMoveLastTick() || model.getLayoutVersion() != layoutVersion)) {
+            recorder.recordChecksum(model);
+        }
+        interpolating = model.didRangersMoveLastTick() && model.getNumRangers() <= INTERPOLATED_RANGER_LIMIT;
+        if (model.getLayoutVersion() == layoutVersion && model.didRangersMoveLastTick() && !interpolating) {
+            repaintMovedRangers();
+        }
+        if (loop.getElapsedMillis() / 1000 != shownSeconds) {
+            updateStats();
+        }
+        handleEvent(event);
     }
 
     /**
-     * This method is used to spawn the rangers.
+     * This method is used to apply the records of the replay that are due at the current tick.
+     *
+     * @return False if the replay has ended or no longer matches the recording.
      */
-    private void spawnRangers() {
-        for (int i = 0; i < numRangers; i++) {
-            int rangerRow, rangerCol;
-            do {
-                rangerRow = random.nextInt(GRID_SIZE);
-                rangerCol = random.nextInt(GRID_SIZE);
-            } while (obstacleGrid[rangerRow][rangerCol] || isRangerPosition(rangerRow, rangerCol) || isInNoSpawnRegion(rangerRow, rangerCol));
-            rangerRows[i] = rangerRow;
-            rangerCols[i] = rangerCol;
+    private boolean applyReplay() {
+        GameModel.Event event;
+        try {
+            event = replay.applyDue(model);
+        } catch (IOException | IllegalStateException e) {
+            stopReplay(e.getMessage());
+            return false;
+        }
+        if (event != GameModel.Event.NONE) {
+            repaint();
+            handleEvent(event);
+        }
+        if (replay.isFinished(model)) {
+            stopReplay("Replay finished after " + model.getTickCount() + " ticks, "
+                    + replay.getVerifiedChecksums() + " checksums verified.");
+            return false;
         }
+        return true;
     }
 
     /**
-     * This method is used to spawn the obstacles.
+     * This method is used to render one frame of the game loop.
+     * During the tick in which the rangers moved, they slide from their previous cell to their new cell.
+     * The metrics overlay, if it is shown, is repainted a few times per second.
      *
-     * @param numObstacles The number of obstacles to spawn.
-     * @param rows         The rows of the obstacles.
-     * @param cols         The columns of the obstacles.
+     * @param alpha The fraction of a tick that has passed since the last tick.
      */
-    private void spawnObstacles(int numObstacles, int[] rows, int[] cols) {
-        for (int i = 0; i < numObstacles; i++) {
-            int obstacleRow, obstacleCol;
-            do {
-                obstacleRow = random.nextInt(GRID_SIZE);
-                obstacleCol = random.nextInt(GRID_SIZE);
-            } while (obstacleGrid[obstacleRow][obstacleCol] || isInNoSpawnRegion(obstacleRow, obstacleCol));
-            rows[i] = obstacleRow;
-            cols[i] = obstacleCol;
-            obstacleGrid[obstacleRow][obstacleCol] = true;
+    @Override
+    public void render(double alpha) {
+        renderAlpha = alpha;
+        if (interpolating) {
+            repaintMovedRangers();
+        }
+        if (showMetrics && System.nanoTime() - metricsShownNanos >= METRICS_REFRESH_NANOS) {
+            repaint(METRICS_BOUNDS);
         }
     }
 
     /**
-     * This method is used to check if the position is in the no spawn region.
+     * This method is used to repaint the previous and current cells of every ranger that moved.
+     * With many rangers the whole panel is repainted, which costs the same as the visible cells.
+     */
+    private void repaintMovedRangers() {
+        if (model.getNumRangers() > INTERPOLATED_RANGER_LIMIT) {
+            repaint();
+            return;
+        }
+        int cameraX = getCameraX();
+        int cameraY = getCameraY();
+        for (int i = 0; i < model.getNumRangers(); i++) {
+            int previousRow = model.getPreviousRangerRow(i);
+            int previousCol = model.getPreviousRangerCol(i);
+            int row = model.getRangerRow(i);
+            int col = model.getRangerCol(i);
+            if (previousRow != row || previousCol != col) {
+                int x = Math.min(previousCol, col) * cellSize - cameraX;
+                int y = Math.min(previousRow, row) * cellSize - cameraY;
+                int width = (Math.abs(previousCol - col) + 1) * cellSize + 1;
+                int height = (Math.abs(previousRow - row) + 1) * cellSize + 1;
+                repaint(x, y, width, height);
+            }
+        }
+    }
+
+    /**
+     * This method is used to paint the components of the panel.
+     * The time of painting the world is recorded in the GameMetrics. The HUD, the message of the state
+     * and the metrics overlay are drawn on top.
+     * Once yogi has been drawn after a move of the player, the time since the key press is recorded as well.
      *
-     * @param row The row of the position.
-     * @param col The column of the position.
-     * @return True if the position is in the no spawn region, false otherwise.
+     * @param g The Graphics object.
      */
-    private boolean isInNoSpawnRegion(int row, int col) {
-        return (row < NO_SPAWN_REGION_SIZE && col < NO_SPAWN_REGION_SIZE);
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        super.paintComponent(g);
+        paintWorld(g);
+        if (inputs.hasUndisplayedMoves() && g.hitClip(model.getYogiCol() * cellSize - getCameraX(),
+                model.getYogiRow() * cellSize - getCameraY(), cellSize, cellSize)) {
+            inputs.markDisplayed();
+        }
+        hud.paint(g, getWidth(), getHeight());
+        if (state != GameState.PLAYING) {
+            drawOverlay(g);
+        }
+        GameMetrics.recordSince(GameMetrics.Path.PAINT, start);
+        if (showMetrics) {
+            drawMetrics(g);
+        }
     }
 
     /**
-     * This method is used to start the ranger movement.
+     * This method is used to paint the world.
+     * The panel shows the part of the world around yogi. The background, the grid and the obstacles
+     * come from cached chunks of the static layer, and only the chunks and cells inside the clip are drawn,
+     * so the cost of a frame depends on the size of the panel and not on the size of the world.
+     *
+     * @param g The Graphics object.
      */
-    private void startRangerMovement() {
-        if (rangerMovementTimer != null) {
-            rangerMovementTimer.stop();
+    private void paintWorld(Graphics g) {
+        if (chunkLayoutVersion != model.getLayoutVersion()) {
+            chunks.clear();
+            chunkLayoutVersion = model.getLayoutVersion();
+        }
+
+        int cameraX = getCameraX();
+        int cameraY = getCameraY();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
         }
 
-        rangerMovementTimer = new Timer(1000, e -> {
-            if (allowRangerMovement) {
-                for (int i = 0; i < numRangers; i++) {
-                    int direction = random.nextInt(4);
-                    int newRangerRow = rangerRows[i];
-                    int newRangerCol = rangerCols[i];
+        int worldSize = model.getGridSize() * cellSize;
+        int left = Math.max(0, clip.x + cameraX);
+        int top = Math.max(0, clip.y + cameraY);
+        int right = Math.min(worldSize, clip.x + clip.width + cameraX);
+        int bottom = Math.min(worldSize, clip.y + clip.height + cameraY);
+        if (left > right || top > bottom) {
+            return;
+        }
 
-                    switch (direction) {
-                        case 0:
-                            newRangerRow = Math.max(0, newRangerRow - 1);
-                            break;
-                        case 1:
-                            newRangerRow = Math.min(GRID_SIZE - 1, newRangerRow + 1);
-                            break;
-                        case 2:
-                            newRangerCol = Math.max(0, newRangerCol - 1);
-                            break;
-                        case 3:
-                            newRangerCol = Math.min(GRID_SIZE - 1, newRangerCol + 1);
-                            break;
-                    }
+        int chunkSize = CHUNK_CELLS * cellSize;
+        for (int chunkRow = top / chunkSize; chunkRow <= (bottom - 1) / chunkSize; chunkRow++) {
+            for (int chunkCol = left / chunkSize; chunkCol <= (right - 1) / chunkSize; chunkCol++) {
+                g.drawImage(getChunk(chunkRow, chunkCol), chunkCol * chunkSize - cameraX, chunkRow * chunkSize - cameraY, this);
+            }
+        }
 
-                    if (!obstacleGrid[newRangerRow][newRangerCol]) {
-                        rangerRows[i] = newRangerRow;
-                        rangerCols[i] = newRangerCol;
-                        repaint();
+        int firstRow = top / cellSize;
+        int lastRow = Math.min(model.getGridSize() - 1, bottom / cellSize);
+        int firstCol = left / cellSize;
+        int lastCol = Math.min(model.getGridSize() - 1, right / cellSize);
 
-                        if (checkYogiCollision(newRangerRow, newRangerCol)) {
-                            allowRangerMovement = false;
-                            yogiLives--;
-                            collectedBaskets = 0;
-                            timer.stop();
-                            showLoseLifeMessage();
-                            updateStats();
-                            if (yogiLives <= 0) {
-                                endGame();
-                            } else {
-                                timer.start();
-                                initializeLevel();
-                            }
-                        } else {
-                            rangerRows[i] = newRangerRow;
-                            rangerCols[i] = newRangerCol;
-                        }
-                    }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                if (model.hasBasket(row, col)) {
+                    drawBasket(g, col * cellSize - cameraX, row * cellSize - cameraY);
                 }
-                repaint();
             }
-        });
-        rangerMovementTimer.start();
+        }
+
+        drawYogi(g, model.getYogiCol() * cellSize - cameraX, model.getYogiRow() * cellSize - cameraY);
+
+        if (interpolating) {
+            for (int i = 0; i < model.getNumRangers(); i++) {
+                double row = model.getPreviousRangerRow(i) + (model.getRangerRow(i) - model.getPreviousRangerRow(i)) * renderAlpha;
+                double col = model.getPreviousRangerCol(i) + (model.getRangerCol(i) - model.getPreviousRangerCol(i)) * renderAlpha;
+                int x = (int) Math.round(col * cellSize) - cameraX;
+                int y = (int) Math.round(row * cellSize) - cameraY;
+                if (x + cellSize >= clip.x && x <= clip.x + clip.width && y + cellSize >= clip.y && y <= clip.y + clip.height) {
+                    drawRanger(g, x, y);
+                }
+            }
+            return;
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                if (model.hasRanger(row, col)) {
+                    drawRanger(g, col * cellSize - cameraX, row * cellSize - cameraY);
+                }
+            }
+        }
     }
 
     /**
-     * This method is used to paint the components of the panel.
+     * This method is used to draw the message of the current state in a box in the middle of the panel.
+     * The lines of the message are followed by the key that leaves the state, and while the player enters a name,
+     * the name is shown with a cursor.
      *
      * @param g The Graphics object.
      */
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    private void drawOverlay(Graphics g) {
+        FontMetrics metrics = g.getFontMetrics(OVERLAY_FONT);
+        FontMetrics promptMetrics = g.getFontMetrics(OVERLAY_PROMPT_FONT);
+        String prompt = nameRejected ? "The name needs at least " + MIN_NAME_LENGTH + " characters" : state.getPrompt();
+        int lineHeight = metrics.getHeight();
+        int boxWidth = prompt == null ? 0 : promptMetrics.stringWidth(prompt);
+        for (String line : overlayLines) {
+            boxWidth = Math.max(boxWidth, metrics.stringWidth(line + "_"));
+        }
+        boxWidth += 2 * lineHeight;
+        int boxHeight = (overlayLines.length + (prompt == null ? 1 : 2)) * lineHeight;
+        int boxX = (getWidth() - boxWidth) / 2;
+        int boxY = (getHeight() - hud.getHeight() - boxHeight) / 2;
+
+        g.setColor(OVERLAY_BACKGROUND);
+        g.fillRoundRect(boxX, boxY, boxWidth, boxHeight, lineHeight, lineHeight);
+        g.setFont(OVERLAY_FONT);
+        int y = boxY + lineHeight / 2 + metrics.getAscent();
+        for (int i = 0; i < overlayLines.length; i++) {
+            String line = state == GameState.ENTERING_NAME && i == overlayLines.length - 1 ? overlayLines[i] + "_" : overlayLines[i];
+            g.setColor(state == GameState.ENTERING_NAME && i == overlayLines.length - 1 ? Color.YELLOW : Color.WHITE);
+            g.drawString(line, boxX + (boxWidth - metrics.stringWidth(line)) / 2, y);
+            y += lineHeight;
+        }
+        if (prompt != null) {
+            g.setFont(OVERLAY_PROMPT_FONT);
+            g.setColor(nameRejected ? Color.ORANGE : Color.LIGHT_GRAY);
+            g.drawString(prompt, boxX + (boxWidth - promptMetrics.stringWidth(prompt)) / 2, y + lineHeight / 2);
+        }
+    }
 
-        g.drawImage(backgroundImage.getImage(), 0, 0, getWidth(), getHeight(), this);
+    /**
+     * This method is used to draw the live frame, paint, tick and input times in the top left corner of the panel.
+     *
+     * @param g The Graphics object.
+     */
+    private void drawMetrics(Graphics g) {
+        if (!g.hitClip(METRICS_BOUNDS.x, METRICS_BOUNDS.y, METRICS_BOUNDS.width, METRICS_BOUNDS.height)) {
+            return;
+        }
+        metricsShownNanos = System.nanoTime();
+        GameMetrics metrics = GameMetrics.get();
+        g.setColor(METRICS_BACKGROUND);
+        g.fillRect(METRICS_BOUNDS.x, METRICS_BOUNDS.y, METRICS_BOUNDS.width, METRICS_BOUNDS.height);
+        g.setColor(Color.WHITE);
+        g.setFont(METRICS_FONT);
+        int x = METRICS_BOUNDS.x + 6;
+        int y = METRICS_BOUNDS.y + 14;
+        g.drawString(formatPercentiles("frame", GameMetrics.Path.FRAME), x, y);
+        g.drawString(formatPercentiles("paint", GameMetrics.Path.PAINT), x, y + 14);
+        g.drawString(formatPercentiles("tick", GameMetrics.Path.TICK), x, y + 28);
+        g.drawString(formatPercentiles("input", GameMetrics.Path.INPUT_LATENCY), x, y + 42);
+        g.drawString(String.format("late frames %d, max stall %.0f ms", metrics.getLateFrames(),
+                metrics.getMaxEdtStallMillis()), x, y + 56);
+        g.drawString("dropped ticks " + metrics.getDroppedTicks(), x, y + 70);
+    }
+
+    private static String formatPercentiles(String name, GameMetrics.Path path) {
+        LatencyHistogram histogram = path.getHistogram();
+        return String.format("%-5s p50 %6.2f ms  p99 %6.2f ms", name,
+                GameMetrics.millis(histogram.getPercentileNanos(50)), GameMetrics.millis(histogram.getPercentileNanos(99)));
+    }
+
+    /**
+     * This method is used to show or hide the metrics overlay.
+     */
+    public void toggleMetrics() {
+        showMetrics = !showMetrics;
+        repaint(METRICS_BOUNDS);
+    }
 
-        for (int i = 0; i <= GRID_SIZE; i++) {
-            int x = i * CELL_SIZE;
-            g.drawLine(x, 0, x, getHeight());
+    /**
+     * This method is used to get a chunk of the static layer, drawing it if it is not cached.
+     *
+     * @param chunkRow The row of the chunk.
+     * @param chunkCol The column of the chunk.
+     * @return The image of the chunk.
+     */
+    private BufferedImage getChunk(int chunkRow, int chunkCol) {
+        long key = ((long) chunkRow << 32) | chunkCol;
+        BufferedImage chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = bakeChunk(chunkRow, chunkCol);
+            chunks.put(key, chunk);
         }
+        return chunk;
+    }
 
-        for (int i = 0; i <= GRID_SIZE; i++) {
-            int y = i * CELL_SIZE;
-            g.drawLine(0, y, getWidth(), y);
+    /**
+     * This method is used to draw the parts of the level that never move into one chunk of the static layer.
+     * It draws the background, the grid lines, the trees and the mountains of CHUNK_CELLS x CHUNK_CELLS cells.
+     *
+     * @param chunkRow The row of the chunk.
+     * @param chunkCol The column of the chunk.
+     * @return The image of the chunk.
+     */
+    private BufferedImage bakeChunk(int chunkRow, int chunkCol) {
+        int gridSize = model.getGridSize();
+        int firstRow = chunkRow * CHUNK_CELLS;
+        int firstCol = chunkCol * CHUNK_CELLS;
+        int rows = Math.min(CHUNK_CELLS, gridSize - firstRow);
+        int cols = Math.min(CHUNK_CELLS, gridSize - firstCol);
+        int width = cols * cellSize + 1;
+        int height = rows * cellSize + 1;
+        int originX = firstCol * cellSize;
+        int originY = firstRow * cellSize;
+
+        BufferedImage chunk = SpriteCache.createCompatibleImage(width, height);
+        Graphics2D g = chunk.createGraphics();
+
+        int tileSize = BACKGROUND_TILE_CELLS * cellSize;
+        Image background = sprites.get(BACKGROUND_IMAGE, tileSize);
+        for (int y = originY / tileSize * tileSize; y < originY + height; y += tileSize) {
+            for (int x = originX / tileSize * tileSize; x < originX + width; x += tileSize) {
+                g.drawImage(background, x - originX, y - originY, this);
+            }
         }
 
-        drawYogi(g, yogiRow, yogiCol);
+        g.setColor(getForeground());
+        for (int i = 0; i <= cols; i++) {
+            int x = i * cellSize;
+            g.drawLine(x, 0, x, height);
+        }
 
-        for (int i = 0; i < numRangers; i++) {
-            drawRanger(g, rangerRows[i], rangerCols[i]);
+        for (int i = 0; i <= rows; i++) {
+            int y = i * cellSize;
+            g.drawLine(0, y, width, y);
         }
 
-        for (int i = 0; i < numTrees; i++) {
-            drawTree(g, treeRows[i], treeCols[i]);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                byte obstacle = model.getObstacle(firstRow + row, firstCol + col);
+                if (obstacle == GameModel.TREE) {
+                    drawTree(g, col * cellSize, row * cellSize);
+                } else if (obstacle == GameModel.MOUNTAIN) {
+                    drawMountain(g, col * cellSize, row * cellSize);
+                }
+            }
         }
+        g.dispose();
+        return chunk;
+    }
 
-        for (int i = 0; i < numMountains; i++) {
-            drawMountain(g, mountainRows[i], mountainCols[i]);
+    /**
+     * This method is used to get the left edge of the visible part of the world.
+     * The camera keeps yogi in the middle of the panel without showing space outside the world.
+     *
+     * @return The x coordinate of the camera in world pixels.
+     */
+    private int getCameraX() {
+        int center = model.getYogiCol() * cellSize + cellSize / 2 - getWidth() / 2;
+        return Math.max(0, Math.min(center, model.getGridSize() * cellSize + 1 - getWidth()));
+    }
+
+    /**
+     * This method is used to get the top edge of the visible part of the world.
+     * The HUD at the bottom of the panel is not part of the view, so yogi is never hidden behind it.
+     *
+     * @return The y coordinate of the camera in world pixels.
+     */
+    private int getCameraY() {
+        int viewHeight = getHeight() - hud.getHeight();
+        int center = model.getYogiRow() * cellSize + cellSize / 2 - viewHeight / 2;
+        return Math.max(0, Math.min(center, model.getGridSize() * cellSize + 1 - viewHeight));
+    }
+
+    /**
+     * This method is used to change the zoom of the panel.
+     * The sprites are scaled to the new size here, and the chunks of the static layer are drawn again at the new cell size.
+     *
+     * @param newCellSize The new size of a cell in pixels.
+     */
+    public void setCellSize(int newCellSize) {
+        newCellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, newCellSize));
+        if (newCellSize != cellSize) {
+            cellSize = newCellSize;
+            spriteSize = Math.max(1, cellSize * YOGI_SIZE / CELL_SIZE);
+            chunks.clear();
+            prescaleSprites();
+            repaint();
         }
+    }
 
-        for (int i = 0; i < NUM_BASKETS; i++) {
-            drawBasket(g, basketRows[i], basketCols[i]);
+    /**
+     * This method is used to scale every sprite and the background to the current cell size before they are drawn,
+     * so the first paint after the panel is created or zoomed neither decodes nor scales an image.
+     */
+    private void prescaleSprites() {
+        for (String image : SPRITE_IMAGES) {
+            sprites.prescale(image, spriteSize);
         }
+        sprites.prescale(BACKGROUND_IMAGE, BACKGROUND_TILE_CELLS * cellSize);
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    private static int zoomIn(int size) {
+        return Math.max(size + 1, size * 5 / 4);
+    }
+
+    private static int zoomOut(int size) {
+        return Math.min(size - 1, size * 4 / 5);
     }
 
     /**
-     * This method is used to draw the yogi.
+     * This method is used to repaint a single cell of the grid.
+     * Swing merges the requests of one event into a single paint.
      *
-     * @param g   The Graphics object.
-     * @param row The row of the yogi.
-     * @param col The column of the yogi.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
      */
-    private void drawYogi(Graphics g, int row, int col) {
-        ImageIcon yogiIcon = new ImageIcon("assets/yogi.png");
-        Image yogiImage = yogiIcon.getImage();
+    private void repaintCell(int row, int col) {
+        repaint(col * cellSize - getCameraX(), row * cellSize - getCameraY(), cellSize + 1, cellSize + 1);
+    }
 
-        int x = col * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        int y = row * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        g.drawImage(yogiImage, x, y, YOGI_SIZE, YOGI_SIZE, this);
+    /**
+     * This method is used to draw the yogi.
+     *
+     * @param g The Graphics object.
+     * @param x The x coordinate of the cell of the yogi.
+     * @param y The y coordinate of the cell of the yogi.
+     */
+    private void drawYogi(Graphics g, int x, int y) {
+        Image yogiImage = sprites.get(YOGI_IMAGE, spriteSize);
+        g.drawImage(yogiImage, x + (cellSize - spriteSize) / 2, y + (cellSize - spriteSize) / 2, this);
     }
 
     /**
      * This method is used to draw the ranger.
      *
-     * @param g   The Graphics object.
-     * @param row The row of the ranger.
-     * @param col The column of the ranger.
+     * @param g The Graphics object.
+     * @param x The x coordinate of the cell of the ranger.
+     * @param y The y coordinate of the cell of the ranger.
      */
-    private void drawRanger(Graphics g, int row, int col) {
-        ImageIcon rangerIcon = new ImageIcon("assets/SpongeRanger.png");
-        Image rangerImage = rangerIcon.getImage();
-
-        int x = col * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        int y = row * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        g.drawImage(rangerImage, x, y, YOGI_SIZE, YOGI_SIZE, this);
+    private void drawRanger(Graphics g, int x, int y) {
+        Image rangerImage = sprites.get(RANGER_IMAGE, spriteSize);
+        g.drawImage(rangerImage, x + (cellSize - spriteSize) / 2, y + (cellSize - spriteSize) / 2, this);
     }
 
     /**
      * This method is used to draw the tree.
      *
-     * @param g   The Graphics object.
-     * @param row The row of the tree.
-     * @param col The column of the tree.
+     * @param g The Graphics object.
+     * @param x The x coordinate of the cell of the tree.
+     * @param y The y coordinate of the cell of the tree.
      */
-    private void drawTree(Graphics g, int row, int col) {
-        ImageIcon treeIcon = new ImageIcon("assets/tree.png");
-        Image treeImage = treeIcon.getImage();
-
-        int x = col * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        int y = row * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        g.drawImage(treeImage, x, y, YOGI_SIZE, YOGI_SIZE, this);
+    private void drawTree(Graphics g, int x, int y) {
+        Image treeImage = sprites.get(TREE_IMAGE, spriteSize);
+        g.drawImage(treeImage, x + (cellSize - spriteSize) / 2, y + (cellSize - spriteSize) / 2, this);
     }
 
     /**
      * This method is used to draw the mountain.
      *
-     * @param g   The Graphics object.
-     * @param row The row of the mountain.
-     * @param col The column of the mountain.
+     * @param g The Graphics object.
+     * @param x The x coordinate of the cell of the mountain.
+     * @param y The y coordinate of the cell of the mountain.
      */
-    private void drawMountain(Graphics g, int row, int col) {
-        ImageIcon mountainIcon = new ImageIcon("assets/mountain.png");
-        Image mountainImage = mountainIcon.getImage();
-
-        int x = col * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        int y = row * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        g.drawImage(mountainImage, x, y, YOGI_SIZE, YOGI_SIZE, this);
+    private void drawMountain(Graphics g, int x, int y) {
+        Image mountainImage = sprites.get(MOUNTAIN_IMAGE, spriteSize);
+        g.drawImage(mountainImage, x + (cellSize - spriteSize) / 2, y + (cellSize - spriteSize) / 2, this);
     }
 
     /**
      * This method is used to draw the basket.
      *
-     * @param g   The Graphics object.
-     * @param row The row of the basket.
-     * @param col The column of the basket.
+     * @param g The Graphics object.
+     * @param x The x coordinate of the cell of the basket.
+     * @param y The y coordinate of the cell of the basket.
      */
-    private void drawBasket(Graphics g, int row, int col) {
-        ImageIcon basketIcon = new ImageIcon("assets/honeyPot.png");
-        Image basketImage = basketIcon.getImage();
+    private void drawBasket(Graphics g, int x, int y) {
+        Image basketImage = sprites.get(BASKET_IMAGE, spriteSize);
+        g.drawImage(basketImage, x + (cellSize - spriteSize) / 2, y + (cellSize - spriteSize) / 2, this);
+    }
 
-        int x = col * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        int y = row * CELL_SIZE + (CELL_SIZE - YOGI_SIZE) / 2;
-        g.drawImage(basketImage, x, y, YOGI_SIZE, YOGI_SIZE, this);
+    /**
+     * This method is used to get the sprite cache of the panel.
+     *
+     * @return The sprite cache.
+     */
+    public SpriteCache getSprites() {
+        return sprites;
     }
 
     /**
-     * This method is used to show the lose life message.
+     * This method is used to get the model that the panel draws.
+     *
+     * @return The game model.
      */
-    private void showLoseLifeMessage() {
-        JOptionPane.showMessageDialog(this, "Yogi Bear lost a life! Remaining lives: " + yogiLives);
+    public GameModel getModel() {
+        return model;
     }
 
 
@@ -516,158 +961,151 @@ class GamePanel extends JPanel implements KeyListener {
      */
     @Override
     public void keyTyped(KeyEvent e) {
+        char c = e.getKeyChar();
+        if (state == GameState.ENTERING_NAME && !Character.isISOControl(c) && c != KeyEvent.CHAR_UNDEFINED
+                && !(c == ' ' && playerName.length() == 0) && playerName.length() < MAX_NAME_LENGTH) {
+            playerName.append(c);
+            nameRejected = false;
+            overlayLines[1] = playerName.toString();
+            repaint();
+        }
     }
 
     /**
      * This method is used to handle the key pressed event.
+     * A move is only added to the input queue, the next tick applies it. Zooming and the metrics overlay react at once.
+     * While a message is shown, the keys confirm the message instead.
      *
      * @param e The KeyEvent object.
      */
     @Override
     public void keyPressed(KeyEvent e) {
-        int keyCode = e.getKeyCode();
-        int newYogiRow = yogiRow;
-        int newYogiCol = yogiCol;
-
-        if (yogiLives > 0) {
-            switch (keyCode) {
-                case KeyEvent.VK_W:
-                case KeyEvent.VK_UP:
-                    newYogiRow = Math.max(0, newYogiRow - 1);
-                    break;
-                case KeyEvent.VK_S:
-                case KeyEvent.VK_DOWN:
-                    newYogiRow = Math.min(GRID_SIZE - 1, newYogiRow + 1);
-                    break;
-                case KeyEvent.VK_A:
-                case KeyEvent.VK_LEFT:
-                    newYogiCol = Math.max(0, newYogiCol - 1);
-                    break;
-                case KeyEvent.VK_D:
-                case KeyEvent.VK_RIGHT:
-                    newYogiCol = Math.min(GRID_SIZE - 1, newYogiCol + 1);
-                    break;
-            }
-
-
-            if (!obstacleGrid[newYogiRow][newYogiCol]) {
-                yogiRow = newYogiRow;
-                yogiCol = newYogiCol;
-                repaint();
-
-                if (checkRangerCollision(newYogiRow, newYogiCol)) {
-                    allowRangerMovement = false;
-                    yogiLives--;
-                    collectedBaskets = 0;
-                    timer.stop();
-                    showLoseLifeMessage();
-                    updateStats();
-                    if (yogiLives <= 0) {
-                        endGame();
-                    } else {
-                        timer.start();
-                        initializeLevel();
-                    }
-
-                } else {
-                    yogiRow = newYogiRow;
-                    yogiCol = newYogiCol;
-
-                    for (int i = 0; i < NUM_BASKETS; i++) {
-                        if (basketRows[i] == newYogiRow && basketCols[i] == newYogiCol) {
-                            basketRows[i] = -1;
-                            collectedBaskets++;
-                            updateStats();
-                            isLevelComplete();
-                        }
-
-                    }
+        if (state == GameState.ENTERING_NAME) {
+            enterNameKey(e);
+            return;
+        }
+        if (state.isConfirmedWithEnter() && (e.getKeyCode() == KeyEvent.VK_ENTER || e.getKeyCode() == KeyEvent.VK_SPACE)) {
+            confirmState();
+            return;
+        }
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_P:
+                if (state == GameState.PLAYING && replay == null) {
+                    setState(GameState.PAUSED, "Paused");
+                } else if (state == GameState.PAUSED) {
+                    setState(GameState.PLAYING);
                 }
-            }
-            repaint();
+                return;
+            case KeyEvent.VK_PLUS:
+            case KeyEvent.VK_EQUALS:
+            case KeyEvent.VK_ADD:
+                setCellSize(zoomIn(cellSize));
+                return;
+            case KeyEvent.VK_MINUS:
+            case KeyEvent.VK_SUBTRACT:
+                setCellSize(zoomOut(cellSize));
+                return;
+            case KeyEvent.VK_F3:
+                toggleMetrics();
+                return;
+            default:
+                break;
+        }
+        GameModel.Input input = toInput(e.getKeyCode());
+        if (input != GameModel.Input.NONE && replay == null && state == GameState.PLAYING) {
+            inputs.press(input, System.nanoTime());
         }
     }
 
     /**
-     * This method is used to check if there is a ranger collision.
+     * This method is used to find the move of a key.
      *
-     * @param newYogiRow The new row of the yogi.
-     * @param newYogiCol The new column of the yogi.
-     * @return True if there is a ranger collision, false otherwise.
+     * @param keyCode The code of the key.
+     * @return The move, or NONE if the key does not move yogi.
      */
-    private boolean checkRangerCollision(int newYogiRow, int newYogiCol) {
-        for (int i = 0; i < numRangers; i++) {
-            int rangerRow = rangerRows[i];
-            int rangerCol = rangerCols[i];
-
-            int rowDistance = Math.abs(newYogiRow - rangerRow);
-            int colDistance = Math.abs(newYogiCol - rangerCol);
-
-            if ((rowDistance == 1 && colDistance == 0) || (rowDistance == 0 && colDistance == 1) || (rowDistance == 1 && colDistance == 1)) {
-                return true;
-            }
+    private static GameModel.Input toInput(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_W:
+            case KeyEvent.VK_UP:
+                return GameModel.Input.UP;
+            case KeyEvent.VK_S:
+            case KeyEvent.VK_DOWN:
+                return GameModel.Input.DOWN;
+            case KeyEvent.VK_A:
+            case KeyEvent.VK_LEFT:
+                return GameModel.Input.LEFT;
+            case KeyEvent.VK_D:
+            case KeyEvent.VK_RIGHT:
+                return GameModel.Input.RIGHT;
+            default:
+                return GameModel.Input.NONE;
         }
-        return false;
+    }
+
+    private static int millisToTicks(int millis, int ticksPerSecond) {
+        return millis <= 0 ? 0 : Math.max(1, Math.round(millis * ticksPerSecond / 1000f));
     }
 
     /**
-     * This method is used to check if there is a yogi collision.
-     *
-     * @param newRangerRow The new row of the ranger.
-     * @param newRangerCol The new column of the ranger.
-     * @return True if there is a yogi collision, false otherwise.
+     * This method is used to apply the move of the input queue that is due in this tick.
+     * While a session is recorded, the move is recorded before it is applied and the checksum after it.
      */
-    private boolean checkYogiCollision(int newRangerRow, int newRangerCol) {
-        int rowDistance = Math.abs(yogiRow - newRangerRow);
-        int colDistance = Math.abs(yogiCol - newRangerCol);
+    private void applyInput() {
+        GameModel.Input input = inputs.poll(model.getTickCount());
+        if (input == GameModel.Input.NONE) {
+            return;
+        }
+        if (recorder != null) {
+            recorder.recordInput(model, input);
+        }
 
-        if ((rowDistance == 1 && colDistance == 0) || (rowDistance == 0 && colDistance == 1) || (rowDistance == 1 && colDistance == 1)) {
-            return true;
+        int oldYogiRow = model.getYogiRow();
+        int oldYogiCol = model.getYogiCol();
+        int oldCameraX = getCameraX();
+        int oldCameraY = getCameraY();
+        GameModel.Event event = model.moveYogi(input);
+        if (recorder != null) {
+            recorder.recordChecksum(model);
+        }
+        if (getCameraX() != oldCameraX || getCameraY() != oldCameraY) {
+            repaint();
+        } else if (event != GameModel.Event.NONE) {
+            repaintCell(oldYogiRow, oldYogiCol);
+            repaintCell(model.getYogiRow(), model.getYogiCol());
         }
+        if (event != GameModel.Event.NONE) {
+            inputs.markApplied();
+        }
+        handleEvent(event);
+    }
 
-        return false;
+    public InputQueue getInputs() {
+        return inputs;
     }
 
     /**
      * This method is used to initialize the game.
      */
     public void initializeGame() {
-        if (timer != null) {
-            timer.stop();
-        }
-        if (rangerMovementTimer != null) {
-            rangerMovementTimer.stop();
-        }
-
-        yogiLives = 3;
-        currentLevel = 1;
-        collectedBaskets = 0;
-        totalCollectedBaskets = 0;
-        elapsedTime = 0;
-        startRangerMovement();
-        initializeLevel();
-        timer = new Timer(1000, timerAction);
-        timer.start();
+        loop.stop();
+        setState(GameState.PLAYING);
+        model.newGame();
+        if (recorder != null) {
+            recorder.recordNewGame(model);
+        }
+        interpolating = false;
+        loop.resetClock();
+        loop.start();
         updateStats();
+        handleEvent(GameModel.Event.NONE);
     }
 
     /**
-     * This method is used to end the game.
+     * This method is used to stop the game loop.
+     * The panel stays as it is until the game is initialized again.
      */
-    private void endGame() {
-        if (rangerMovementTimer != null) {
-            rangerMovementTimer.stop();
-        }
-
-        timer.stop();
-
-        saveScoreToDatabase();
-
-        JOptionPane.showMessageDialog(this, "Game Over! "
-                + "\nYogi Bear has run out of lives. "
-                + "\nTotal Collected Baskets: " + totalCollectedBaskets
-                + "\nElapsed Time: " + elapsedTime + " seconds");
-        initializeGame();
+    public void stopGame() {
+        loop.stop();
     }
 
     /**
@@ -677,5 +1115,6 @@ class GamePanel extends JPanel implements KeyListener {
      */
     @Override
     public void keyReleased(KeyEvent e) {
+        inputs.release(toInput(e.getKeyCode()), System.nanoTime());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+/**
+ * This enum is used to describe what the game panel is doing.
+ * The simulation only runs while PLAYING. Every other state draws a message over the game and waits for a key,
+ * while the game loop keeps drawing frames, so no state change ever opens a modal dialog.
+ */
+enum GameState {
+    PLAYING(null),
+    PAUSED("Press P to continue"),
+    LIFE_LOST("Press Enter to continue"),
+    LEVEL_COMPLETE("Press Enter to continue"),
+    GAME_OVER("Press Enter to save your score"),
+    GAME_COMPLETE("Press Enter to save your score"),
+    ENTERING_NAME("Press Enter to save, Esc to skip"),
+    REPLAY_ENDED(null);
+
+    private final String prompt;
+
+    GameState(String prompt) {
+        this.prompt = prompt;
+    }
+
+    /**
+     * This method is used to get the line that tells the player which key leaves the state.
+     *
+     * @return The line, or null if no key leaves the state.
+     */
+    public String getPrompt() {
+        return prompt;
+    }
+
+    /**
+     * This method is used to check if the key that leaves the state is Enter.
+     *
+     * @return True for the messages that are confirmed with Enter.
+     */
+    public boolean isConfirmedWithEnter() {
+        return this == LIFE_LOST || this == LEVEL_COMPLETE || this == GAME_OVER || this == GAME_COMPLETE;
+    }
+}
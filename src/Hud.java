@@ -0,0 +1,149 @@
+import java.awt.*;
+
+/**
+ * This class is used to draw the statistics of the game in a bar at the bottom of the game panel.
+ * Every field has a fixed place and a character buffer that holds its label, so a new value only writes its
+ * digits into the buffer and the panel repaints just the place of that field. Nothing is allocated when a value
+ * changes or when the bar is drawn, so showing the statistics creates no garbage while the game runs.
+ * The bar is opaque, because filling a translucent rectangle allocates a mask on every draw.
+ */
+class Hud {
+    private static final int MAX_DIGITS = 19;
+    private static final int PADDING = 4;
+    private static final int GAP = 12;
+    private static final Color BACKGROUND = new Color(32, 32, 32);
+
+    /**
+     * The fields of the bar, from left to right.
+     */
+    enum Field {
+        BASKETS("Baskets ", "", 4),
+        TOTAL("Total ", "", 6),
+        LEVEL("Level ", "", 3),
+        RANGERS("Rangers ", "", 7),
+        LIVES("Lives ", "", 2),
+        TIME("Time ", " s", 6);
+
+        private final String label;
+        private final String unit;
+        private final int digits;
+
+        Field(String label, String unit, int digits) {
+            this.label = label;
+            this.unit = unit;
+            this.digits = digits;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    private final Font font;
+    private final int ascent;
+    private final int height;
+    private final int[] x = new int[FIELDS.length];
+    private final int[] width = new int[FIELDS.length];
+    private final char[][] text = new char[FIELDS.length][];
+    private final int[] length = new int[FIELDS.length];
+    private final long[] value = new long[FIELDS.length];
+    private long updates;
+
+    /**
+     * This is the constructor of the class.
+     * The place of every field is made wide enough for the label and the usual number of digits of the field.
+     *
+     * @param font    The font of the bar.
+     * @param metrics The metrics of the font.
+     */
+    public Hud(Font font, FontMetrics metrics) {
+        this.font = font;
+        this.ascent = metrics.getAscent();
+        this.height = metrics.getHeight() + PADDING;
+        int left = PADDING;
+        for (Field field : FIELDS) {
+            int i = field.ordinal();
+            text[i] = new char[field.label.length() + MAX_DIGITS + 1 + field.unit.length()];
+            field.label.getChars(0, field.label.length(), text[i], 0);
+            x[i] = left;
+            width[i] = metrics.stringWidth(field.label) + field.digits * metrics.charWidth('0') + metrics.stringWidth(field.unit);
+            left += width[i] + GAP;
+            value[i] = -1;
+            set(field, 0);
+        }
+    }
+
+    /**
+     * This method is used to set the value of a field.
+     * The digits are written into the character buffer of the field, after its label and before its unit.
+     *
+     * @param field    The field.
+     * @param newValue The value, at least 0.
+     * @return True if the value has changed and the place of the field has to be repainted.
+     */
+    public boolean set(Field field, long newValue) {
+        int i = field.ordinal();
+        if (value[i] == newValue) {
+            return false;
+        }
+        value[i] = newValue;
+        char[] chars = text[i];
+        int digits = 1;
+        for (long rest = newValue / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = field.label.length() + digits;
+        long rest = newValue;
+        for (int position = end - 1; position >= field.label.length(); position--) {
+            chars[position] = (char) ('0' + rest % 10);
+            rest /= 10;
+        }
+        field.unit.getChars(0, field.unit.length(), chars, end);
+        length[i] = end + field.unit.length();
+        updates++;
+        return true;
+    }
+
+    /**
+     * This method is used to draw the bar at the bottom of a panel.
+     * Only the fields inside the clip of the Graphics object are drawn.
+     *
+     * @param g           The Graphics object.
+     * @param panelWidth  The width of the panel.
+     * @param panelHeight The height of the panel.
+     */
+    public void paint(Graphics g, int panelWidth, int panelHeight) {
+        int top = panelHeight - height;
+        if (!g.hitClip(0, top, panelWidth, height)) {
+            return;
+        }
+        g.setColor(BACKGROUND);
+        g.fillRect(0, top, panelWidth, height);
+        g.setColor(Color.WHITE);
+        g.setFont(font);
+        int baseline = top + PADDING / 2 + ascent;
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (g.hitClip(x[i], top, width[i], height)) {
+                g.drawChars(text[i], 0, length[i], x[i], baseline);
+            }
+        }
+    }
+
+    public int getX(Field field) {
+        return x[field.ordinal()];
+    }
+
+    public int getWidth(Field field) {
+        return width[field.ordinal()];
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getValue(Field field) {
+        return value[field.ordinal()];
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+}
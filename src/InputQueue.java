@@ -0,0 +1,216 @@
+/**
+ * This class is used to buffer the moves of the player between two simulation ticks.
+ * The key listener only adds the pressed move with the time it was pressed, and the game loop takes at most one move
+ * per tick, in the order the keys were pressed, so a quick tap is never lost and a move never overtakes a ranger move.
+ * <p>
+ * The key repeat of the operating system is ignored, including the repeats that arrive as a release immediately
+ * followed by a press of the same key. While a key is held, the queue repeats its move itself,
+ * first after the repeat delay and then every repeat interval, counted in ticks, so holding a key moves yogi at the
+ * same speed on every machine. A repeat interval of 0 turns the repeat off, so every move needs its own key press.
+ * <p>
+ * The queue also remembers when the taken moves were pressed, so the panel can record the time from the key press
+ * until yogi is drawn at the new cell. Repeated moves are not measured, because no key was pressed for them.
+ * The queue must only be used on the event dispatch thread.
+ */
+class InputQueue {
+    private static final long REPEAT_RELEASE_NANOS = 2_000_000L;
+    private final GameModel.Input[] inputs;
+    private final long[] pressNanos;
+    private final long[] appliedNanos;
+    private final int repeatDelayTicks;
+    private final int repeatIntervalTicks;
+    private int head;
+    private int size;
+    private int applied;
+    private GameModel.Input held = GameModel.Input.NONE;
+    private long nextRepeatTick = Long.MAX_VALUE;
+    private GameModel.Input released = GameModel.Input.NONE;
+    private long releasedNanos;
+    private long releasedNextRepeatTick;
+    private long lastPressNanos;
+    private long presses;
+    private long coalesced;
+    private long overflowed;
+    private long repeats;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param capacity            The number of moves that can wait for a tick, further presses are dropped.
+     * @param repeatDelayTicks    The number of ticks a key must be held before its move is repeated.
+     * @param repeatIntervalTicks The number of ticks between two repeated moves, or 0 for no repeat.
+     */
+    public InputQueue(int capacity, int repeatDelayTicks, int repeatIntervalTicks) {
+        this.inputs = new GameModel.Input[capacity];
+        this.pressNanos = new long[capacity];
+        this.appliedNanos = new long[capacity];
+        this.repeatDelayTicks = Math.max(1, repeatDelayTicks);
+        this.repeatIntervalTicks = Math.max(0, repeatIntervalTicks);
+    }
+
+    /**
+     * This method is used to add a pressed key.
+     * A press of the key that is already held, or that was released only a moment ago,
+     * is a repeat of the operating system and is dropped.
+     *
+     * @param input The move of the key.
+     * @param nanos The time of the press from System.nanoTime.
+     */
+    public void press(GameModel.Input input, long nanos) {
+        if (input == held) {
+            coalesced++;
+            return;
+        }
+        if (input == released && nanos - releasedNanos < REPEAT_RELEASE_NANOS) {
+            held = input;
+            nextRepeatTick = releasedNextRepeatTick;
+            released = GameModel.Input.NONE;
+            coalesced++;
+            return;
+        }
+        held = input;
+        nextRepeatTick = Long.MAX_VALUE;
+        if (size == inputs.length) {
+            overflowed++;
+            return;
+        }
+        int tail = (head + size) % inputs.length;
+        inputs[tail] = input;
+        pressNanos[tail] = nanos;
+        size++;
+        presses++;
+    }
+
+    /**
+     * This method is used to release a key, which stops the repeat of its move.
+     *
+     * @param input The move of the key.
+     * @param nanos The time of the release from System.nanoTime.
+     */
+    public void release(GameModel.Input input, long nanos) {
+        if (input == held) {
+            released = input;
+            releasedNanos = nanos;
+            releasedNextRepeatTick = nextRepeatTick;
+            releaseAll();
+        }
+    }
+
+    /**
+     * This method is used to forget the held key, for example when the panel loses the focus
+     * and will not be told when the key is released.
+     */
+    public void releaseAll() {
+        held = GameModel.Input.NONE;
+        nextRepeatTick = Long.MAX_VALUE;
+    }
+
+    /**
+     * This method is used to take the move of a tick.
+     * A pressed key comes first. Without one, the held key is repeated when its next repeat is due.
+     *
+     * @param tick The tick the move is for.
+     * @return The move, or NONE if there is no move in this tick.
+     */
+    public GameModel.Input poll(long tick) {
+        if (size > 0) {
+            GameModel.Input input = inputs[head];
+            lastPressNanos = pressNanos[head];
+            inputs[head] = null;
+            head = (head + 1) % inputs.length;
+            size--;
+            if (input == held && repeatIntervalTicks > 0) {
+                nextRepeatTick = tick + repeatDelayTicks;
+            }
+            return input;
+        }
+        if (held != GameModel.Input.NONE && tick >= nextRepeatTick) {
+            nextRepeatTick = tick + repeatIntervalTicks;
+            lastPressNanos = 0;
+            repeats++;
+            return held;
+        }
+        return GameModel.Input.NONE;
+    }
+
+    /**
+     * This method is used to remember that the last taken move has been applied to the model,
+     * so its latency is recorded once it has been drawn.
+     */
+    public void markApplied() {
+        if (lastPressNanos != 0 && applied < appliedNanos.length) {
+            appliedNanos[applied++] = lastPressNanos;
+        }
+        lastPressNanos = 0;
+    }
+
+    /**
+     * This method is used to record the time from the key press to now for every applied move
+     * that has not been drawn yet.
+     *
+     * @return True if a latency was recorded.
+     */
+    public boolean markDisplayed() {
+        if (applied == 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < applied; i++) {
+            GameMetrics.record(GameMetrics.Path.INPUT_LATENCY, now - appliedNanos[i]);
+        }
+        applied = 0;
+        return true;
+    }
+
+    public boolean hasUndisplayedMoves() {
+        return applied > 0;
+    }
+
+    /**
+     * This method is used to drop every waiting move and the held key, for example when a new game starts.
+     */
+    public void clear() {
+        while (size > 0) {
+            inputs[head] = null;
+            head = (head + 1) % inputs.length;
+            size--;
+        }
+        applied = 0;
+        lastPressNanos = 0;
+        releaseAll();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getPresses() {
+        return presses;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public long getOverflowed() {
+        return overflowed;
+    }
+
+    public long getRepeats() {
+        return repeats;
+    }
+
+    /**
+     * This method is used to describe the counters of the queue.
+     *
+     * @return A one line summary of the counters.
+     */
+    @Override
+    public String toString() {
+        LatencyHistogram latency = GameMetrics.Path.INPUT_LATENCY.getHistogram();
+        return String.format("Input: %d presses, %d key repeats ignored, %d dropped, %d repeated moves, "
+                        + "key to display %.1f ms p50, %.1f ms p99",
+                presses, coalesced, overflowed, repeats, GameMetrics.millis(latency.getPercentileNanos(50)),
+                GameMetrics.millis(latency.getPercentileNanos(99)));
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is used to keep the high scores in the scores table of a database.
+ */
+class JdbcScoreStore implements ScoreStore {
+    private static final int BATCH_SIZE = 32;
+    private static final long BORROW_TIMEOUT_MILLIS = 5_000;
+    private static final String INSERT_SQL = "INSERT INTO scores (player_name, score, time) VALUES (?, ?, ?)";
+    private static final String TOP_SQL = "SELECT * FROM scores ORDER BY score DESC, id LIMIT ?";
+    private static final String RANK_SQL = "SELECT COUNT(*) FROM scores WHERE score > ?";
+    private static final String SIZE_SQL = "SELECT COUNT(*) FROM scores";
+
+    private final ConnectionPool pool;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param pool The pool of database connections. It is closed with the store.
+     */
+    public JdbcScoreStore(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * This method is used to insert scores into the database in one transaction.
+     * The connection is given back to the pool with autocommit turned on again, so the next query on it
+     * does not run in a transaction that is never committed.
+     *
+     * @param entries The scores to insert.
+     * @throws IOException If the database could not be reached or the transaction failed.
+     */
+    @Override
+    public void addAll(List<ScoreEntry> entries) throws IOException {
+        Connection connection = borrow();
+        boolean broken = false;
+        try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_SQL)) {
+            connection.setAutoCommit(false);
+            for (int i = 0; i < entries.size(); i++) {
+                ScoreEntry entry = entries.get(i);
+                preparedStatement.setString(1, entry.getPlayerName());
+                preparedStatement.setInt(2, entry.getScore());
+                preparedStatement.setInt(3, entry.getTime());
+                preparedStatement.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    preparedStatement.executeBatch();
+                }
+            }
+            preparedStatement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            broken = true;
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                rollbackException.printStackTrace();
+            }
+            throw new IOException("Failed to save the scores.", e);
+        } finally {
+            if (!broken) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    broken = true;
+                }
+            }
+            pool.giveBack(connection, broken);
+        }
+    }
+
+    @Override
+    public List<ScoreEntry> topScores(int count) throws IOException {
+        Connection connection = borrow();
+        boolean broken = false;
+        try (PreparedStatement preparedStatement = connection.prepareStatement(TOP_SQL)) {
+            preparedStatement.setInt(1, count);
+            List<ScoreEntry> entries = new ArrayList<>(count);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    entries.add(new ScoreEntry(resultSet.getString("id"), resultSet.getString("player_name"),
+                            resultSet.getInt("score"), resultSet.getInt("time")));
+                }
+            }
+            return entries;
+        } catch (SQLException e) {
+            broken = true;
+            throw new IOException("Failed to load the high scores.", e);
+        } finally {
+            pool.giveBack(connection, broken);
+        }
+    }
+
+    @Override
+    public long rankOf(int score) throws IOException {
+        return count(RANK_SQL, score) + 1;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return count(SIZE_SQL, null);
+    }
+
+    private long count(String sql, Integer score) throws IOException {
+        Connection connection = borrow();
+        boolean broken = false;
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            if (score != null) {
+                preparedStatement.setInt(1, score);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        } catch (SQLException e) {
+            broken = true;
+            throw new IOException("Failed to count the high scores.", e);
+        } finally {
+            pool.giveBack(connection, broken);
+        }
+    }
+
+    private Connection borrow() throws IOException {
+        try {
+            return pool.borrow(BORROW_TIMEOUT_MILLIS);
+        } catch (SQLException e) {
+            throw new IOException("Failed to connect to the database: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    @Override
+    public String toString() {
+        return "the database";
+    }
+}
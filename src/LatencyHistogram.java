@@ -0,0 +1,109 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is used to count how long something took, so the percentiles of the times can be read while the game runs.
+ * The times are counted in buckets that double in width every 16 buckets, so every time is kept to within
+ * about 6 percent whether it took a microsecond or a second, and recording a time is a few atomic increments
+ * without any allocation. It may be recorded into and read from any thread.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * This method is used to count one time.
+     *
+     * @param nanos The time in nanoseconds, negative times are counted as zero.
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * This method is used to find the bucket of a time.
+     * The first 16 buckets hold one nanosecond each, after that every power of two is split into 16 buckets.
+     */
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (nanos >>> shift & SUB_BUCKETS - 1);
+    }
+
+    /**
+     * This method is used to get the time in the middle of a bucket.
+     */
+    private static long bucketValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift >>> 1);
+    }
+
+    /**
+     * This method is used to get the time that a share of the counted times did not exceed.
+     *
+     * @param percentile The share in percent, from 0 to 100.
+     * @return The time in nanoseconds, or 0 if nothing was counted.
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(bucketValue(bucket), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * This method is used to get the average of the counted times.
+     *
+     * @return The average time in nanoseconds, or 0 if nothing was counted.
+     */
+    public double getMeanNanos() {
+        long total = count.get();
+        return total == 0 ? 0 : (double) totalNanos.get() / total;
+    }
+
+    /**
+     * This method is used to forget every counted time.
+     * Times that are counted at the same moment may be kept in part.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+}
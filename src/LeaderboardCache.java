@@ -0,0 +1,213 @@
+import javax.swing.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is used to keep the best scores in memory, so the high score table opens without
+ * waiting for the score store. The scores are loaded once in the background, new scores are added
+ * directly when a game ends, and the store is queried again only when the cached scores are
+ * older than the staleness period. Listeners are told on the event dispatch thread when the scores change.
+ */
+class LeaderboardCache {
+    private final ScoreStore store;
+    private final int size;
+    private final long staleMillis;
+    private final ExecutorService executor;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final List<ScoreEntry> recentScores = new ArrayList<>();
+    private volatile List<ScoreEntry> topScores = Collections.emptyList();
+    private volatile boolean loaded;
+    private volatile long loadedAtMillis;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshNanos = new AtomicLong();
+    private volatile long lastRefreshNanos;
+
+    /**
+     * This is the constructor of the class.
+     * It starts loading the scores in the background.
+     *
+     * @param store       The store that the scores are saved in.
+     * @param size        The number of scores to keep.
+     * @param staleMillis How old the cached scores may get before they are loaded again.
+     */
+    public LeaderboardCache(ScoreStore store, int size, long staleMillis) {
+        this.store = store;
+        this.size = size;
+        this.staleMillis = staleMillis;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leaderboard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshInBackground();
+    }
+
+    /**
+     * This method is used to get the best scores without waiting for the score store.
+     * If the scores are stale or not loaded yet, a refresh is started in the background.
+     *
+     * @return The best scores, best first. The list is empty until the first load has finished.
+     */
+    public List<ScoreEntry> getTopScores() {
+        if (loaded) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        if (!loaded || System.currentTimeMillis() - loadedAtMillis > staleMillis) {
+            refreshInBackground();
+        }
+        return topScores;
+    }
+
+    /**
+     * This method is used to add the score of a finished game to the cached scores.
+     *
+     * @param entry The score of the game.
+     */
+    public void recordScore(ScoreEntry entry) {
+        synchronized (recentScores) {
+            recentScores.add(entry);
+            topScores = merge(topScores, Collections.singletonList(entry));
+        }
+        fireChanged();
+    }
+
+    /**
+     * This method is used to load the scores from the store on the background thread.
+     * Only one refresh runs at a time.
+     */
+    private void refreshInBackground() {
+        if (refreshing.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    refresh();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * This method is used to load the best scores from the store.
+     * Scores recorded since the last load are merged in, because they may still be waiting in the score writer.
+     */
+    private void refresh() {
+        long start = System.nanoTime();
+        List<ScoreEntry> loadedScores;
+        try {
+            loadedScores = store.topScores(size);
+        } catch (IOException e) {
+            System.out.println("Failed to load the high scores: " + e.getMessage());
+            return;
+        }
+
+        synchronized (recentScores) {
+            List<ScoreEntry> unsaved = new ArrayList<>();
+            for (ScoreEntry recent : recentScores) {
+                if (!containsSameScore(loadedScores, recent)) {
+                    unsaved.add(recent);
+                }
+            }
+            recentScores.retainAll(unsaved);
+            topScores = merge(loadedScores, unsaved);
+        }
+        loadedAtMillis = System.currentTimeMillis();
+        loaded = true;
+        lastRefreshNanos = System.nanoTime() - start;
+        refreshNanos.addAndGet(lastRefreshNanos);
+        refreshes.incrementAndGet();
+        fireChanged();
+    }
+
+    private static boolean containsSameScore(List<ScoreEntry> scores, ScoreEntry entry) {
+        for (ScoreEntry score : scores) {
+            if (score.getScore() == entry.getScore() && score.getTime() == entry.getTime()
+                    && score.getPlayerName().equals(entry.getPlayerName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method is used to merge new scores into a list of best scores.
+     *
+     * @param scores    The best scores, best first.
+     * @param newScores The scores to add.
+     * @return A new unmodifiable list of at most size scores, best first.
+     */
+    private List<ScoreEntry> merge(List<ScoreEntry> scores, List<ScoreEntry> newScores) {
+        List<ScoreEntry> merged = new ArrayList<>(scores.size() + newScores.size());
+        merged.addAll(scores);
+        for (ScoreEntry entry : newScores) {
+            int position = 0;
+            while (position < merged.size() && merged.get(position).getScore() >= entry.getScore()) {
+                position++;
+            }
+            merged.add(position, entry);
+        }
+        if (merged.size() > size) {
+            merged.subList(size, merged.size()).clear();
+        }
+        return Collections.unmodifiableList(merged);
+    }
+
+    /**
+     * This method is used to add a listener that is called on the event dispatch thread when the scores change.
+     *
+     * @param listener The listener.
+     */
+    public void addChangeListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : listeners) {
+            SwingUtilities.invokeLater(listener);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    public long getLastRefreshNanos() {
+        return lastRefreshNanos;
+    }
+
+    /**
+     * This method is used to describe the cache counters.
+     *
+     * @return A one line summary of the counters.
+     */
+    @Override
+    public String toString() {
+        long count = refreshes.get();
+        return "Leaderboard cache: " + hits.get() + " hits, " + misses.get() + " misses, " + count + " refreshes, "
+                + (count == 0 ? 0 : refreshNanos.get() / count / 1_000_000) + " ms average refresh";
+    }
+}
@@ -0,0 +1,310 @@
+import java.util.ArrayDeque;
+import java.util.Random;
+
+/**
+ * This class is used to generate the layouts of the levels.
+ * A layout holds everything a level starts with: the rangers, the obstacles, the baskets, the occupancy index
+ * and, if the rangers chase yogi, the pursuit field from the start cell. The model takes a finished layout over
+ * by pointing its fields at the entity stores of the layout, so starting a level does not depend on its size.
+ * <p>
+ * Every layout has its own seed, so it is the same whether it is generated in the background or on the spot.
+ * Layouts the model no longer uses are handed back and their stores and arrays are reused for the next layout,
+ * so once the largest level has been generated, generating a level allocates nothing.
+ * A generator must only be used by one thread at a time.
+ */
+class LevelGenerator {
+    private static final int BASKET_REPAIR_ATTEMPTS = 64;
+    private static final int MAX_LAYOUT_ATTEMPTS = 100;
+
+    /**
+     * The layout of a level.
+     */
+    static final class Layout {
+        int level;
+        final EntityStore rangers = new EntityStore(4);
+        final EntityStore trees = new EntityStore(2);
+        final EntityStore mountains = new EntityStore(2);
+        final EntityStore baskets;
+        final OccupancyIndex index;
+        int[] pursuitDistances;
+
+        Layout(int gridSize) {
+            baskets = new EntityStore(2, gridSize);
+            index = new OccupancyIndex(gridSize);
+        }
+    }
+
+    private final int gridSize;
+    private final FreeCellSet freeCells;
+    private final ReachabilityCheck reachability;
+    private final Random random = new Random();
+    private final ArrayDeque<Layout> spares = new ArrayDeque<>();
+    private PursuitField pursuitBuilder;
+    private volatile long generatedLayouts;
+    private volatile long repairedLayouts;
+    private volatile long regeneratedLayouts;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param gridSize The number of cells on each side of the grid.
+     */
+    public LevelGenerator(int gridSize) {
+        this.gridSize = gridSize;
+        this.freeCells = new FreeCellSet(gridSize * gridSize);
+        this.reachability = new ReachabilityCheck(gridSize);
+    }
+
+    /**
+     * This method is used to generate the layout of a level.
+     * Every entity is placed on a random cell of the free cell set, so the placing is linear in the number of entities.
+     * A layout in which yogi cannot reach every basket is repaired, or generated again if it cannot be repaired.
+     *
+     * @param difficulty The difficulty that decides the number of entities.
+     * @param level      The level.
+     * @param seed       The seed of the layout.
+     * @param pursuit    True to build the pursuit field from the start cell of yogi.
+     * @return The layout.
+     * @throws IllegalStateException If there are not enough free cells for the entities of the level,
+     *                               or no layout with reachable baskets was found.
+     */
+    public Layout generate(Difficulty difficulty, int level, long seed, boolean pursuit) {
+        long start = System.nanoTime();
+        random.setSeed(seed);
+        Layout layout = spareLayout();
+        layout.level = level;
+        int numRangers = difficulty.rangers(level, gridSize);
+        int numObstacles = difficulty.obstacles(level, gridSize);
+        int numBaskets = difficulty.baskets(level);
+        layout.rangers.ensureCapacity(numRangers);
+        layout.trees.ensureCapacity(numObstacles);
+        layout.mountains.ensureCapacity(numObstacles);
+        layout.baskets.ensureCapacity(numBaskets);
+
+        for (int attempt = 1; !placeEntities(layout, random, numRangers, numObstacles, numBaskets); attempt++) {
+            if (attempt == MAX_LAYOUT_ATTEMPTS) {
+                throw new IllegalStateException("No layout of level " + level + " in which every basket can be reached was found in "
+                        + MAX_LAYOUT_ATTEMPTS + " attempts.");
+            }
+            regeneratedLayouts++;
+            clear(layout);
+        }
+
+        layout.rangers.copyColumn(EntityStore.ROW, GameModel.PREVIOUS_ROW);
+        layout.rangers.copyColumn(EntityStore.COL, GameModel.PREVIOUS_COL);
+
+        if (pursuit) {
+            if (pursuitBuilder == null) {
+                pursuitBuilder = new PursuitField(gridSize);
+            }
+            layout.pursuitDistances = sized(layout.pursuitDistances, gridSize * gridSize);
+            pursuitBuilder.buildInto(layout.index, 0, 0, layout.pursuitDistances);
+        } else {
+            layout.pursuitDistances = null;
+        }
+        generatedLayouts++;
+        GameMetrics.recordSince(GameMetrics.Path.LEVEL_GENERATION, start);
+        return layout;
+    }
+
+    /**
+     * This method is used to take a layout that is no longer used, or a new one.
+     * The obstacles and the entities in the index of a reused layout are removed first.
+     *
+     * @return An empty layout.
+     */
+    private Layout spareLayout() {
+        Layout layout;
+        synchronized (spares) {
+            layout = spares.poll();
+        }
+        if (layout == null) {
+            layout = new Layout(gridSize);
+        } else {
+            clear(layout);
+        }
+        return layout;
+    }
+
+    /**
+     * This method is used to remove the obstacles, the rangers and the baskets of a layout.
+     * The index only visits the entities, the obstacle layers are cleared word by word.
+     *
+     * @param layout The layout.
+     */
+    private void clear(Layout layout) {
+        layout.index.clearObstacles();
+        EntityStore rangers = layout.rangers;
+        for (int i = 0; i < rangers.size(); i++) {
+            layout.index.removeRanger(rangers.getRow(i), rangers.getCol(i));
+        }
+        EntityStore baskets = layout.baskets;
+        for (int i = 0; i < baskets.size(); i++) {
+            layout.index.removeBasket(baskets.getRow(i), baskets.getCol(i));
+        }
+        rangers.clear();
+        layout.trees.clear();
+        layout.mountains.clear();
+        baskets.clear();
+    }
+
+    private static int[] sized(int[] array, int length) {
+        return array != null && array.length == length ? array : new int[length];
+    }
+
+    /**
+     * This method is used to hand back a layout that the model no longer uses, so its arrays can be reused.
+     * It may be called from any thread.
+     *
+     * @param layout The layout.
+     */
+    public void recycle(Layout layout) {
+        synchronized (spares) {
+            spares.add(layout);
+        }
+    }
+
+    /**
+     * This method is used to place the rangers, the obstacles and the baskets of the level.
+     * If yogi cannot walk to a basket, the basket is moved to a random cell yogi can walk to.
+     *
+     * @param layout       The empty layout.
+     * @param random       The random number generator of the layout.
+     * @param numRangers   The number of rangers.
+     * @param numObstacles The number of trees, which is also the number of mountains.
+     * @param numBaskets   The number of baskets.
+     * @return True if every basket can be reached, false if the layout has to be generated again.
+     */
+    private boolean placeEntities(Layout layout, Random random, int numRangers, int numObstacles, int numBaskets) {
+        reachability.clear();
+
+        freeCells.reset();
+        setNoSpawnRegionFree(false);
+        spawnRangers(layout, random, numRangers);
+        spawnObstacles(layout, random, numObstacles, layout.trees, GameModel.TREE);
+        spawnObstacles(layout, random, numObstacles, layout.mountains, GameModel.MOUNTAIN);
+
+        setNoSpawnRegionFree(true);
+        freeCells.remove(0);
+        spawnBaskets(layout, random, numBaskets);
+
+        EntityStore baskets = layout.baskets;
+        return reachability.check(0, 0, baskets.column(EntityStore.ROW), baskets.column(EntityStore.COL), baskets.size())
+                || repairBaskets(layout, random);
+    }
+
+    /**
+     * This method is used to move every basket that yogi cannot reach to a free cell that yogi can reach.
+     * Cells that cannot be reached are taken out of the free cell set while searching, so they are not tried twice.
+     * When a basket needs more than BASKET_REPAIR_ATTEMPTS tries, most of the grid is walled off from yogi,
+     * and the layout is rejected instead.
+     *
+     * @return True if every basket could be moved, false otherwise.
+     */
+    private boolean repairBaskets(Layout layout, Random random) {
+        EntityStore baskets = layout.baskets;
+        for (int i = 0; i < baskets.size(); i++) {
+            if (reachability.isReachable(baskets.getRow(i), baskets.getCol(i))) {
+                continue;
+            }
+            layout.index.removeBasket(baskets.getRow(i), baskets.getCol(i));
+            int cell = -1;
+            for (int attempt = 0; attempt < BASKET_REPAIR_ATTEMPTS && freeCells.size() > 0; attempt++) {
+                int candidate = freeCells.removeRandom(random);
+                if (reachability.isReachable(candidate / gridSize, candidate % gridSize)) {
+                    cell = candidate;
+                    break;
+                }
+            }
+            if (cell < 0) {
+                baskets.remove(i);
+                return false;
+            }
+            baskets.setCell(i, cell / gridSize, cell % gridSize);
+            layout.index.addBasket(baskets.getRow(i), baskets.getCol(i));
+        }
+        repairedLayouts++;
+        return true;
+    }
+
+    /**
+     * This method is used to spawn the baskets.
+     */
+    private void spawnBaskets(Layout layout, Random random, int numBaskets) {
+        for (int i = 0; i < numBaskets; i++) {
+            int cell = freeCells.removeRandom(random);
+            layout.baskets.add(cell / gridSize, cell % gridSize);
+            layout.index.addBasket(cell / gridSize, cell % gridSize);
+        }
+    }
+
+    /**
+     * This method is used to spawn the rangers.
+     */
+    private void spawnRangers(Layout layout, Random random, int numRangers) {
+        for (int i = 0; i < numRangers; i++) {
+            int cell = freeCells.removeRandom(random);
+            layout.rangers.add(cell / gridSize, cell % gridSize);
+            layout.index.addRanger(cell / gridSize, cell % gridSize);
+        }
+    }
+
+    /**
+     * This method is used to spawn the obstacles.
+     *
+     * @param layout       The layout.
+     * @param random       The random number generator of the layout.
+     * @param numObstacles The number of obstacles to spawn.
+     * @param obstacles    The store of the obstacles.
+     * @param kind         The kind of the obstacles, TREE or MOUNTAIN.
+     */
+    private void spawnObstacles(Layout layout, Random random, int numObstacles, EntityStore obstacles, byte kind) {
+        for (int i = 0; i < numObstacles; i++) {
+            int cell = freeCells.removeRandom(random);
+            int row = cell / gridSize;
+            int col = cell % gridSize;
+            obstacles.add(row, col);
+            layout.index.addObstacle(row, col, kind);
+            reachability.block(row, col);
+        }
+    }
+
+    /**
+     * This method is used to add the cells of the no spawn region to the free cell set or to remove them from it.
+     *
+     * @param free True to add the cells, false to remove them.
+     */
+    private void setNoSpawnRegionFree(boolean free) {
+        int regionSize = Math.min(GameModel.NO_SPAWN_REGION_SIZE, gridSize);
+        for (int row = 0; row < regionSize; row++) {
+            for (int col = 0; col < regionSize; col++) {
+                if (free) {
+                    freeCells.add(row * gridSize + col);
+                } else {
+                    freeCells.remove(row * gridSize + col);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method is used to get the reachability check of the generated layouts, which counts the rejected layouts.
+     *
+     * @return The reachability check.
+     */
+    public ReachabilityCheck getReachability() {
+        return reachability;
+    }
+
+    public long getGeneratedLayouts() {
+        return generatedLayouts;
+    }
+
+    public long getRepairedLayouts() {
+        return repairedLayouts;
+    }
+
+    public long getRegeneratedLayouts() {
+        return regeneratedLayouts;
+    }
+}
@@ -0,0 +1,530 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to keep the high scores in local files, so the game needs no database server.
+ * Every score is appended to a log file and never changed again. An index file holds the score and the
+ * log position of every logged score, sorted best first, and is memory-mapped when the store is opened,
+ * so opening the store does not read the log. Scores logged after the index was written are kept sorted
+ * in memory and merged with the index when the best scores or a rank are asked for. When enough of them
+ * have been collected, a background thread writes a new index that includes them.
+ * <p>
+ * Every new index is written to a file with the next generation number instead of replacing the mapped one,
+ * because a memory-mapped file cannot be replaced on Windows. The newest index is used, and the older ones
+ * are deleted once the operating system allows it.
+ */
+class LocalScoreStore implements ScoreStore {
+    private static final int MAGIC = 0x59424931;
+    private static final int HEADER_BYTES = 20;
+    private static final int ENTRY_BYTES = 12;
+    private static final int DEFAULT_COMPACT_THRESHOLD = 4096;
+    private static final int READ_BUFFER_BYTES = 1 << 16;
+    private static final Pattern INDEX_NAME = Pattern.compile("scores(?:\\.(\\d+))?\\.idx");
+
+    private final Path directory;
+    private final Path logPath;
+    private long indexGeneration;
+    private final FileChannel log;
+    private final int compactThreshold;
+    private final ExecutorService compactor;
+    private long logLength;
+    private MappedByteBuffer index;
+    private long indexCount;
+    private int[] deltaScores = new int[16];
+    private long[] deltaOffsets = new long[16];
+    private int deltaSize;
+    private boolean compacting;
+    private boolean closed;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param directory The directory of the files. It is created if it is missing.
+     * @throws IOException If the files could not be opened.
+     */
+    public LocalScoreStore(File directory) throws IOException {
+        this(directory, Integer.getInteger("yogi.scoreStore.compactThreshold", DEFAULT_COMPACT_THRESHOLD));
+    }
+
+    /**
+     * This is the constructor of the class.
+     * It maps the index and reads only the part of the log that the index does not cover.
+     * A record cut off by a crash at the end of the log is removed.
+     *
+     * @param directory        The directory of the files. It is created if it is missing.
+     * @param compactThreshold The number of scores outside the index that starts a compaction.
+     * @throws IOException If the files could not be opened.
+     */
+    public LocalScoreStore(File directory, int compactThreshold) throws IOException {
+        Files.createDirectories(directory.toPath());
+        this.directory = directory.toPath();
+        this.logPath = new File(directory, "scores.log").toPath();
+        this.indexGeneration = newestIndexGeneration();
+        this.compactThreshold = compactThreshold;
+        this.log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long indexedLogLength = mapIndex(log.size());
+        logLength = scanLog(indexedLogLength);
+        if (logLength < log.size()) {
+            log.truncate(logLength);
+        }
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "score-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactIfNeeded();
+    }
+
+    /**
+     * This method is used to get the path of the index file of a generation.
+     * Generation 0 is the scores.idx file of the stores that only ever had one index file.
+     *
+     * @param generation The generation.
+     * @return The path of the index file.
+     */
+    private Path indexPath(long generation) {
+        return directory.resolve(generation == 0 ? "scores.idx" : "scores." + generation + ".idx");
+    }
+
+    /**
+     * This method is used to find the generation of the newest index file.
+     *
+     * @return The newest generation, or 0 if there is no numbered index file.
+     */
+    private long newestIndexGeneration() throws IOException {
+        long newest = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "scores*.idx")) {
+            for (Path file : files) {
+                Matcher matcher = INDEX_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(1) != null) {
+                    newest = Math.max(newest, Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * This method is used to delete the index files older than the current one.
+     * A file that is still mapped cannot be deleted on some systems, it is tried again after the next compaction.
+     */
+    private void deleteOldIndexes() {
+        for (long generation = indexGeneration - 1; generation >= 0; generation--) {
+            try {
+                Files.deleteIfExists(indexPath(generation));
+            } catch (IOException e) {
+                // still mapped, deleted after a later compaction
+            }
+        }
+    }
+
+    /**
+     * This method is used to map the index file.
+     * An index that is missing, damaged or longer than the log is ignored, so the whole log is read instead.
+     *
+     * @param logSize The size of the log file.
+     * @return The length of the log that the index covers.
+     */
+    private long mapIndex(long logSize) throws IOException {
+        index = null;
+        indexCount = 0;
+        Path indexPath = indexPath(indexGeneration);
+        if (!Files.isRegularFile(indexPath)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return 0;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long count = mapped.getLong(4);
+            long covered = mapped.getLong(12);
+            if (mapped.getInt(0) != MAGIC || covered > logSize || HEADER_BYTES + count * ENTRY_BYTES != channel.size()) {
+                System.out.println("Ignoring the damaged score index " + indexPath);
+                return 0;
+            }
+            index = mapped;
+            indexCount = count;
+            return covered;
+        }
+    }
+
+    /**
+     * This method is used to read the log from a position to its end into the scores kept in memory.
+     *
+     * @param start The position to start at.
+     * @return The end of the last complete record.
+     */
+    private long scanLog(long start) throws IOException {
+        int[] scores = new int[16];
+        long[] offsets = new long[16];
+        int count = 0;
+        long position = start;
+        log.position(start);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log), READ_BUFFER_BYTES));
+        byte[] name = new byte[256];
+        try {
+            while (true) {
+                in.readInt();
+                int nameLength = in.readUnsignedShort();
+                if (nameLength > name.length) {
+                    name = new byte[nameLength];
+                }
+                in.readFully(name, 0, nameLength);
+                int score = in.readInt();
+                in.readInt();
+                if (count == scores.length) {
+                    scores = Arrays.copyOf(scores, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                scores[count] = score;
+                offsets[count] = position;
+                count++;
+                position += recordBytes(nameLength);
+            }
+        } catch (EOFException e) {
+            // end of the log, or a record cut off by a crash
+        }
+        setDelta(scores, offsets, count);
+        return position;
+    }
+
+    /**
+     * This method is used to sort the scores read from the log, best first and then oldest first.
+     * The score and the place in the log are packed into one long, so millions of scores sort quickly.
+     */
+    private void setDelta(int[] scores, long[] offsets, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            long rank = 0xFFFFFFFFL - ((long) scores[i] - Integer.MIN_VALUE);
+            keys[i] = ((rank << 32) | i) ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(keys);
+        deltaScores = new int[Math.max(16, count)];
+        deltaOffsets = new long[Math.max(16, count)];
+        for (int i = 0; i < count; i++) {
+            int original = (int) keys[i];
+            deltaScores[i] = scores[original];
+            deltaOffsets[i] = offsets[original];
+        }
+        deltaSize = count;
+    }
+
+    private static int recordBytes(int nameLength) {
+        return 4 + 2 + nameLength + 4 + 4;
+    }
+
+    /**
+     * This method is used to append scores to the log.
+     * The scores are synced to disk before they are added to the scores kept in memory.
+     *
+     * @param entries The scores to save.
+     * @throws IOException If the scores could not be written. The log is then cut back to where it was.
+     */
+    @Override
+    public synchronized void addAll(List<ScoreEntry> entries) throws IOException {
+        if (closed) {
+            throw new IOException("The score store is closed.");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        long id = size();
+        long[] offsets = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            ScoreEntry entry = entries.get(i);
+            offsets[i] = logLength + out.size();
+            out.writeInt((int) ++id);
+            out.writeUTF(entry.getPlayerName());
+            out.writeInt(entry.getScore());
+            out.writeInt(entry.getTime());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        try {
+            long position = logLength;
+            while (buffer.hasRemaining()) {
+                position += log.write(buffer, position);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            log.truncate(logLength);
+            throw e;
+        }
+        logLength += buffer.capacity();
+        for (int i = 0; i < entries.size(); i++) {
+            insertDelta(entries.get(i).getScore(), offsets[i]);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * This method is used to add a score to the sorted scores kept in memory.
+     * It goes after the equal scores, which are older.
+     */
+    private void insertDelta(int score, long offset) {
+        if (deltaSize == deltaScores.length) {
+            deltaScores = Arrays.copyOf(deltaScores, deltaSize * 2);
+            deltaOffsets = Arrays.copyOf(deltaOffsets, deltaSize * 2);
+        }
+        int position = countDeltaAtLeast(deltaScores, deltaSize, score);
+        System.arraycopy(deltaScores, position, deltaScores, position + 1, deltaSize - position);
+        System.arraycopy(deltaOffsets, position, deltaOffsets, position + 1, deltaSize - position);
+        deltaScores[position] = score;
+        deltaOffsets[position] = offset;
+        deltaSize++;
+    }
+
+    /**
+     * This method is used to get the best scores by merging the index and the scores kept in memory.
+     * Only the records of the returned scores are read from the log.
+     */
+    @Override
+    public List<ScoreEntry> topScores(int count) throws IOException {
+        MappedByteBuffer mapped;
+        long mappedCount;
+        int[] scores;
+        long[] offsets;
+        int size;
+        synchronized (this) {
+            mapped = index;
+            mappedCount = indexCount;
+            size = Math.min(count, deltaSize);
+            scores = Arrays.copyOf(deltaScores, size);
+            offsets = Arrays.copyOf(deltaOffsets, size);
+        }
+        List<ScoreEntry> entries = new ArrayList<>(count);
+        long i = 0;
+        int j = 0;
+        while (entries.size() < count && (i < mappedCount || j < size)) {
+            long offset;
+            if (j == size) {
+                offset = indexOffset(mapped, i++);
+            } else if (i == mappedCount) {
+                offset = offsets[j++];
+            } else {
+                int indexScore = indexScore(mapped, i);
+                if (indexScore > scores[j] || (indexScore == scores[j] && indexOffset(mapped, i) < offsets[j])) {
+                    offset = indexOffset(mapped, i++);
+                } else {
+                    offset = offsets[j++];
+                }
+            }
+            entries.add(readRecord(offset));
+        }
+        return entries;
+    }
+
+    /**
+     * This method is used to get the rank of a score with a binary search of the index and of the scores kept in memory.
+     */
+    @Override
+    public synchronized long rankOf(int score) {
+        return countIndexAbove(score) + countDeltaAtLeast(deltaScores, deltaSize, score + 1L) + 1;
+    }
+
+    @Override
+    public synchronized long size() {
+        return indexCount + deltaSize;
+    }
+
+    private long countIndexAbove(int score) {
+        long low = 0;
+        long high = indexCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (indexScore(index, middle) > score) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int countDeltaAtLeast(int[] scores, int size, long score) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (scores[middle] >= score) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int indexScore(MappedByteBuffer mapped, long i) {
+        return mapped.getInt((int) (HEADER_BYTES + i * ENTRY_BYTES));
+    }
+
+    private static long indexOffset(MappedByteBuffer mapped, long i) {
+        return mapped.getLong((int) (HEADER_BYTES + i * ENTRY_BYTES + 4));
+    }
+
+    /**
+     * This method is used to read one record of the log.
+     *
+     * @param offset The position of the record.
+     * @return The score of the record.
+     */
+    private ScoreEntry readRecord(long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(6);
+        readFully(head, offset);
+        int nameLength = head.getShort(4) & 0xFFFF;
+        ByteBuffer record = ByteBuffer.allocate(recordBytes(nameLength));
+        readFully(record, offset);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()));
+        int id = in.readInt();
+        String playerName = in.readUTF();
+        return new ScoreEntry(Integer.toString(id), playerName, in.readInt(), in.readInt());
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = log.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("The score log ends inside a record.");
+            }
+        }
+    }
+
+    /**
+     * This method is used to start a compaction in the background if enough scores are outside the index.
+     * The threshold grows with the index, so rewriting the index stays a small part of the cost of saving scores.
+     */
+    private synchronized void compactIfNeeded() {
+        if (!closed && !compacting && deltaSize >= Math.max(compactThreshold, indexCount / 16)) {
+            compacting = true;
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    synchronized (this) {
+                        compacting = false;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * This method is used to write a new index that includes the scores kept in memory.
+     * The old index and the scores are merged into a temporary file, which becomes the index of the next generation.
+     * The old index stays mapped until the new one is mapped, so it is never replaced while it is in use.
+     * Scores saved while the index is written stay in memory for the next compaction.
+     */
+    private void compact() throws IOException {
+        MappedByteBuffer mapped;
+        long mappedCount;
+        int[] scores;
+        long[] offsets;
+        long covered;
+        long generation;
+        synchronized (this) {
+            generation = indexGeneration + 1;
+            mapped = index;
+            mappedCount = indexCount;
+            scores = Arrays.copyOf(deltaScores, deltaSize);
+            offsets = Arrays.copyOf(deltaOffsets, deltaSize);
+            covered = logLength;
+        }
+        long start = System.nanoTime();
+        Path temporary = directory.resolve("scores.idx.tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, READ_BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeLong(mappedCount + scores.length);
+            out.writeLong(covered);
+            long i = 0;
+            int j = 0;
+            while (i < mappedCount || j < scores.length) {
+                boolean fromIndex = j == scores.length || (i < mappedCount
+                        && (indexScore(mapped, i) > scores[j]
+                        || (indexScore(mapped, i) == scores[j] && indexOffset(mapped, i) < offsets[j])));
+                if (fromIndex) {
+                    out.writeInt(indexScore(mapped, i));
+                    out.writeLong(indexOffset(mapped, i));
+                    i++;
+                } else {
+                    out.writeInt(scores[j]);
+                    out.writeLong(offsets[j]);
+                    j++;
+                }
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, indexPath(generation), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            indexGeneration = generation;
+            mapIndex(logLength);
+            deleteOldIndexes();
+            int kept = 0;
+            for (int k = 0; k < deltaSize; k++) {
+                if (deltaOffsets[k] >= covered) {
+                    deltaScores[kept] = deltaScores[k];
+                    deltaOffsets[kept] = deltaOffsets[k];
+                    kept++;
+                }
+            }
+            deltaSize = kept;
+        }
+        System.out.println("Score index compacted: " + (mappedCount + scores.length) + " scores in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * This method is used to close the store.
+     * It waits for a running compaction and folds the remaining scores into the index, so the next start is quick.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+            if (deltaSize > 0) {
+                compact();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
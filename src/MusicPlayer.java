@@ -0,0 +1,220 @@
+import javax.sound.sampled.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * This class is used to play the background music in a loop without loading the whole file.
+ * A music thread opens the file and the line as soon as the player is created, then reads
+ * the file in small pieces into one reusable buffer and writes them to a SourceDataLine. At the end of the file the file is opened again while the line still holds
+ * a quarter of a second of music, so the loop has no gap. Pausing stops the line where it is,
+ * and playing again continues from there.
+ */
+class MusicPlayer {
+    private static final int LINE_BUFFER_MILLIS = 250;
+    private static final int CHUNKS_PER_LINE_BUFFER = 4;
+
+    private final File file;
+    private final Object lock = new Object();
+    private final Thread thread;
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private volatile SourceDataLine line;
+    private byte[] buffer;
+    private boolean playing;
+    private boolean closed;
+    private long playRequestedNanos;
+    private volatile long startLatencyNanos = -1;
+    private volatile long underruns;
+    private volatile long bytesPlayed;
+
+    /**
+     * This is the constructor of the class.
+     * It starts the music thread, which opens the line and then waits until the music is played.
+     *
+     * @param file The WAV file to play.
+     */
+    public MusicPlayer(File file) {
+        this.file = file;
+        this.thread = new Thread(this::run, "music");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * This method is used to wait until the line is open, or could not be opened.
+     */
+    public void awaitReady() {
+        try {
+            ready.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method is used to start or continue the music.
+     */
+    public void play() {
+        synchronized (lock) {
+            if (!playing && startLatencyNanos < 0) {
+                playRequestedNanos = System.nanoTime();
+            }
+            playing = true;
+            lock.notifyAll();
+        }
+        SourceDataLine current = line;
+        if (current != null) {
+            current.start();
+        }
+    }
+
+    /**
+     * This method is used to pause the music.
+     */
+    public void pause() {
+        synchronized (lock) {
+            playing = false;
+        }
+        SourceDataLine current = line;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    /**
+     * This method is used to stop the music thread and release the audio line.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        SourceDataLine current = line;
+        if (current != null) {
+            current.stop();
+            current.flush();
+            current.close();
+        }
+    }
+
+    /**
+     * This method is used to run the music thread.
+     * An underrun is counted whenever the line has played everything it was given before the next piece arrives.
+     */
+    private void run() {
+        AudioInputStream stream = null;
+        try {
+            stream = AudioSystem.getAudioInputStream(file);
+            openLine(stream.getFormat());
+            ready.countDown();
+            boolean primed = false;
+            while (waitUntilPlaying()) {
+                if (stream == null) {
+                    stream = AudioSystem.getAudioInputStream(file);
+                }
+                int read = stream.read(buffer, 0, buffer.length);
+                if (read < 0) {
+                    stream.close();
+                    stream = null;
+                    continue;
+                }
+                SourceDataLine current = line;
+                if (primed && current.isRunning() && current.available() >= current.getBufferSize()) {
+                    underruns++;
+                }
+                current.write(buffer, 0, read);
+                bytesPlayed += read;
+                if (!primed) {
+                    primed = true;
+                    startLatencyNanos = System.nanoTime() - playRequestedNanos;
+                }
+            }
+        } catch (LineUnavailableException | IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            e.printStackTrace();
+        } finally {
+            ready.countDown();
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (line != null) {
+                line.close();
+            }
+        }
+    }
+
+    /**
+     * This method is used to let the music thread wait while the music is paused.
+     *
+     * @return False if the player was closed.
+     */
+    private boolean waitUntilPlaying() {
+        synchronized (lock) {
+            while (!playing && !closed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+            return !closed;
+        }
+    }
+
+    /**
+     * This method is used to open the line with a buffer of LINE_BUFFER_MILLIS and the reusable read buffer.
+     *
+     * @param format The format of the music.
+     */
+    private void openLine(AudioFormat format) throws LineUnavailableException {
+        int frameSize = Math.max(1, format.getFrameSize());
+        int lineBytes = (int) (format.getFrameRate() * LINE_BUFFER_MILLIS / 1000) * frameSize;
+        buffer = new byte[Math.max(frameSize, lineBytes / CHUNKS_PER_LINE_BUFFER / frameSize * frameSize)];
+        SourceDataLine opened = AudioSystem.getSourceDataLine(format);
+        opened.open(format, lineBytes);
+        line = opened;
+        synchronized (lock) {
+            if (playing) {
+                opened.start();
+            }
+        }
+    }
+
+    /**
+     * This method is used to check, after awaitReady, whether the line could be opened.
+     *
+     * @return True if the music can be played, false if it plays nothing.
+     */
+    public boolean isAvailable() {
+        return line != null;
+    }
+
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * This method is used to get the memory used for the music, which is the read buffer and the buffer of the line.
+     *
+     * @return The number of bytes.
+     */
+    public int getResidentBytes() {
+        SourceDataLine current = line;
+        return (buffer == null ? 0 : buffer.length) + (current == null ? 0 : current.getBufferSize());
+    }
+
+    /**
+     * This method is used to describe the music counters.
+     *
+     * @return A one line summary of the counters.
+     */
+    @Override
+    public String toString() {
+        return "Music: " + underruns + " underruns, " + getResidentBytes() / 1024 + " KB resident, "
+                + bytesPlayed / 1024 + " KB played, started in "
+                + (startLatencyNanos < 0 ? "-" : Long.toString(startLatencyNanos / 1_000_000)) + " ms";
+    }
+}
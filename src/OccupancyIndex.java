@@ -0,0 +1,252 @@
+import java.util.Arrays;
+
+/**
+ * This class is used to look up what occupies a cell of the grid in constant time.
+ * Every layer of the grid is a bitboard: one bit per cell, 64 cells of a row in a long.
+ * The obstacles, the cells with rangers and the cells with baskets each have a layer, and the danger layer holds
+ * the cells next to a ranger. The danger layer is not counted per cell but computed from the ranger layer with
+ * shifts and ors of the three rows around a word, and only the few words around a ranger that moved are computed again.
+ * Checking whether yogi can enter a cell or whether it is lethal is a load and a mask.
+ * <p>
+ * The mountains have a layer of their own, so the kind of an obstacle is read from two layers.
+ * <p>
+ * Several rangers can stand on one cell. Such a cell is rare, so it is marked in the crowded layer, and only
+ * the crowded cells count their further rangers in a small hash table. The index therefore takes a few bits
+ * per cell and no array of ints or bytes the size of the grid.
+ */
+class OccupancyIndex {
+    private final int gridSize;
+    private final int words;
+    private final long lastWordMask;
+    private final long[] obstacles;
+    private final long[] mountains;
+    private final long[] rangers;
+    private final long[] crowded;
+    private final long[] danger;
+    private final long[] baskets;
+    private final CellMap extraRangers = new CellMap(16);
+
+    /**
+     * This is the constructor of the class.
+     * It creates an empty index for a square grid.
+     *
+     * @param gridSize The number of cells on each side of the grid.
+     */
+    public OccupancyIndex(int gridSize) {
+        this.gridSize = gridSize;
+        this.words = (gridSize + 63) >>> 6;
+        this.lastWordMask = (gridSize & 63) == 0 ? -1L : (1L << (gridSize & 63)) - 1;
+        obstacles = new long[gridSize * words];
+        mountains = new long[gridSize * words];
+        rangers = new long[gridSize * words];
+        crowded = new long[gridSize * words];
+        danger = new long[gridSize * words];
+        baskets = new long[gridSize * words];
+    }
+
+    /**
+     * This method is used to put an obstacle on a cell.
+     *
+     * @param row  The row of the obstacle.
+     * @param col  The column of the obstacle.
+     * @param kind The kind of the obstacle, TREE or MOUNTAIN.
+     */
+    public void addObstacle(int row, int col, byte kind) {
+        obstacles[row * words + (col >>> 6)] |= 1L << col;
+        if (kind == GameModel.MOUNTAIN) {
+            mountains[row * words + (col >>> 6)] |= 1L << col;
+        }
+    }
+
+    /**
+     * This method is used to remove every obstacle.
+     */
+    public void clearObstacles() {
+        Arrays.fill(obstacles, 0);
+        Arrays.fill(mountains, 0);
+    }
+
+    /**
+     * This method is used to get the kind of obstacle on a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return TREE, MOUNTAIN or NO_OBSTACLE.
+     */
+    public byte getObstacle(int row, int col) {
+        long bit = 1L << col;
+        int word = row * words + (col >>> 6);
+        if ((obstacles[word] & bit) == 0) {
+            return GameModel.NO_OBSTACLE;
+        }
+        return (mountains[word] & bit) != 0 ? GameModel.MOUNTAIN : GameModel.TREE;
+    }
+
+    /**
+     * This method is used to add a ranger to a cell.
+     *
+     * @param row The row of the ranger.
+     * @param col The column of the ranger.
+     */
+    public void addRanger(int row, int col) {
+        int word = row * words + (col >>> 6);
+        long bit = 1L << col;
+        if ((rangers[word] & bit) == 0) {
+            rangers[word] |= bit;
+            updateDanger(row, col);
+        } else {
+            int cell = row * gridSize + col;
+            extraRangers.put(cell, extraRangers.get(cell, 0) + 1);
+            crowded[word] |= bit;
+        }
+    }
+
+    /**
+     * This method is used to remove a ranger from a cell.
+     *
+     * @param row The row of the ranger.
+     * @param col The column of the ranger.
+     */
+    public void removeRanger(int row, int col) {
+        int word = row * words + (col >>> 6);
+        long bit = 1L << col;
+        if ((crowded[word] & bit) == 0) {
+            rangers[word] &= ~bit;
+            updateDanger(row, col);
+        } else {
+            int cell = row * gridSize + col;
+            int extra = extraRangers.get(cell, 0) - 1;
+            if (extra == 0) {
+                extraRangers.remove(cell, 0);
+                crowded[word] &= ~bit;
+            } else {
+                extraRangers.put(cell, extra);
+            }
+        }
+    }
+
+    /**
+     * This method is used to move a ranger from one cell to another.
+     *
+     * @param oldRow The old row of the ranger.
+     * @param oldCol The old column of the ranger.
+     * @param newRow The new row of the ranger.
+     * @param newCol The new column of the ranger.
+     */
+    public void moveRanger(int oldRow, int oldCol, int newRow, int newCol) {
+        if (oldRow != newRow || oldCol != newCol) {
+            removeRanger(oldRow, oldCol);
+            addRanger(newRow, newCol);
+        }
+    }
+
+    /**
+     * This method is used to compute the danger layer again around a cell whose ranger layer has changed.
+     * The danger of a cell only depends on the rangers of the 3 x 3 cells around it,
+     * so the words that hold the columns next to the cell in the 3 rows around it are computed again.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    private void updateDanger(int row, int col) {
+        int firstRow = Math.max(0, row - 1);
+        int lastRow = Math.min(gridSize - 1, row + 1);
+        int firstWord = Math.max(0, col - 1) >>> 6;
+        int lastWord = Math.min(gridSize - 1, col + 1) >>> 6;
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int word = firstWord; word <= lastWord; word++) {
+                danger[r * words + word] = dangerWord(r, word);
+            }
+        }
+    }
+
+    /**
+     * This method is used to compute one word of the danger layer.
+     * A ranger makes the cells to its left and right dangerous, which are the ranger bits shifted by one,
+     * with the bit that crosses into the neighbouring word carried over. In the rows above and below,
+     * the cell of the ranger itself is dangerous too. The cell of a ranger is only dangerous if another
+     * ranger stands next to it.
+     *
+     * @param row  The row of the word.
+     * @param word The word of the row.
+     * @return The danger bits of the word.
+     */
+    private long dangerWord(int row, int word) {
+        long bits = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(gridSize - 1, row + 1); r++) {
+            int base = r * words + word;
+            long middle = rangers[base];
+            long left = word > 0 ? rangers[base - 1] : 0;
+            long right = word < words - 1 ? rangers[base + 1] : 0;
+            bits |= middle << 1 | left >>> 63 | middle >>> 1 | right << 63;
+            if (r != row) {
+                bits |= middle;
+            }
+        }
+        return word == words - 1 ? bits & lastWordMask : bits;
+    }
+
+    /**
+     * This method is used to put a basket on a cell.
+     *
+     * @param row The row of the basket.
+     * @param col The column of the basket.
+     */
+    public void addBasket(int row, int col) {
+        baskets[row * words + (col >>> 6)] |= 1L << col;
+    }
+
+    /**
+     * This method is used to take the basket from a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    public void removeBasket(int row, int col) {
+        baskets[row * words + (col >>> 6)] &= ~(1L << col);
+    }
+
+    /**
+     * This method is used to check if there is a basket on a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return True if a basket is on the cell, false otherwise.
+     */
+    public boolean hasBasket(int row, int col) {
+        return (baskets[row * words + (col >>> 6)] & 1L << col) != 0;
+    }
+
+    /**
+     * This method is used to check if there is at least one ranger on a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return True if a ranger is on the cell, false otherwise.
+     */
+    public boolean hasRanger(int row, int col) {
+        return (rangers[row * words + (col >>> 6)] & 1L << col) != 0;
+    }
+
+    /**
+     * This method is used to check if a ranger is on one of the 8 neighbours of a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return True if a ranger is next to the cell, false otherwise.
+     */
+    public boolean isDangerous(int row, int col) {
+        return (danger[row * words + (col >>> 6)] & 1L << col) != 0;
+    }
+
+    /**
+     * This method is used to check if there is an obstacle on a cell, which neither yogi nor a ranger can enter.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return True if an obstacle is on the cell, false otherwise.
+     */
+    public boolean isBlocked(int row, int col) {
+        return (obstacles[row * words + (col >>> 6)] & 1L << col) != 0;
+    }
+}
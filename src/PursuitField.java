@@ -0,0 +1,252 @@
+import java.util.Arrays;
+
+/**
+ * This class is used to let the rangers chase yogi around the obstacles.
+ * It holds one breadth-first distance field from the cell of yogi, shared by every ranger,
+ * so a ranger finds its next step by looking at the four cells around it and the cost
+ * does not grow with the number of rangers.
+ * <p>
+ * When yogi moves, the new field is built in the background of the ticks: every tick clears or expands at most
+ * a budget of cells, and the rangers keep following the last complete field until the new one is done.
+ * Clearing the distances of the old field counts against the budget too, so a move of yogi costs nothing
+ * until the next tick, however large the grid is.
+ * <p>
+ * While a build runs, the rangers chase the cell yogi was on when it started, and a move of yogi only starts
+ * the next build when the running one is done. On the default grid a build finishes within one tick, so the rangers
+ * are at most one move behind. A build over a grid of many budgets takes that many ticks, and on the largest grids
+ * the rangers follow a cell yogi left seconds ago. The ticks of every completed build are recorded in the GameMetrics.
+ */
+class PursuitField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final int gridSize;
+    private OccupancyIndex obstacles;
+    private int[] current;
+    private int[] next;
+    private final int[] queue;
+    private int head;
+    private int tail;
+    private int cleared;
+    private int buildTicks;
+    private boolean building;
+    private int target = -1;
+    private int buildTarget = -1;
+    private int currentTarget = -1;
+    private long builds;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param gridSize The number of cells on each side of the grid.
+     */
+    public PursuitField(int gridSize) {
+        this.gridSize = gridSize;
+        int cells = gridSize * gridSize;
+        this.current = new int[cells];
+        this.next = new int[cells];
+        this.queue = new int[cells];
+        Arrays.fill(current, UNREACHABLE);
+    }
+
+    /**
+     * This method is used to build the field of a new level at once.
+     *
+     * @param obstacles The index with the obstacles of the level.
+     * @param row       The row of yogi.
+     * @param col       The column of yogi.
+     */
+    public void reset(OccupancyIndex obstacles, int row, int col) {
+        this.obstacles = obstacles;
+        target = row * gridSize + col;
+        startBuild();
+        advance(Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method is used to build a complete field into the given array, for example for a level that is generated
+     * in the background. The field the rangers follow does not change, so this must not be called while a build runs.
+     *
+     * @param obstacles The index with the obstacles of the level.
+     * @param row       The row of yogi.
+     * @param col       The column of yogi.
+     * @param distances The array that receives the distance of every cell.
+     */
+    public void buildInto(OccupancyIndex obstacles, int row, int col, int[] distances) {
+        this.obstacles = obstacles;
+        Arrays.fill(distances, UNREACHABLE);
+        int start = row * gridSize + col;
+        distances[start] = 0;
+        queue[0] = start;
+        head = 0;
+        tail = 1;
+        expand(distances, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method is used to make a field that was built with buildInto the field the rangers follow.
+     * A running build is dropped. The array of the field that was followed before is given back,
+     * so the caller can use it for the next buildInto, and the field keeps the given array.
+     *
+     * @param obstacles The index with the obstacles of the new level.
+     * @param distances The complete field of the new level.
+     * @param row       The row of yogi.
+     * @param col       The column of yogi.
+     * @return The array of the previous field.
+     */
+    public int[] install(OccupancyIndex obstacles, int[] distances, int row, int col) {
+        int[] previous = current;
+        this.obstacles = obstacles;
+        current = distances;
+        target = row * gridSize + col;
+        currentTarget = target;
+        buildTarget = target;
+        building = false;
+        builds++;
+        return previous;
+    }
+
+    /**
+     * This method is used to tell the field where yogi is.
+     * A new build starts unless one is running already, in which case it starts when that one is done.
+     *
+     * @param row The row of yogi.
+     * @param col The column of yogi.
+     */
+    public void setTarget(int row, int col) {
+        target = row * gridSize + col;
+        if (!building && target != currentTarget) {
+            startBuild();
+        }
+    }
+
+    private void startBuild() {
+        buildTarget = target;
+        cleared = 0;
+        buildTicks = 0;
+        head = 0;
+        tail = 0;
+        building = true;
+    }
+
+    /**
+     * This method is used to continue the running build.
+     * The distances of the old field are cleared first, and then the cells are expanded from yogi.
+     * When the build is done, it replaces the field the rangers follow.
+     *
+     * @param budget The largest number of cells to clear or expand.
+     */
+    public void advance(int budget) {
+        if (!building) {
+            return;
+        }
+        buildTicks++;
+        int[] distances = next;
+        if (cleared < distances.length) {
+            int end = (int) Math.min(distances.length, (long) cleared + budget);
+            Arrays.fill(distances, cleared, end, UNREACHABLE);
+            budget -= end - cleared;
+            cleared = end;
+            if (cleared < distances.length) {
+                return;
+            }
+            distances[buildTarget] = 0;
+            queue[0] = buildTarget;
+            tail = 1;
+        }
+        expand(distances, budget);
+        if (head == tail) {
+            next = current;
+            current = distances;
+            currentTarget = buildTarget;
+            building = false;
+            builds++;
+            GameMetrics.recordPursuitBuild(buildTicks);
+            if (target != currentTarget) {
+                startBuild();
+            }
+        }
+    }
+
+    /**
+     * This method is used to expand the cells in the queue in breadth-first order.
+     *
+     * @param distances The field that is being built.
+     * @param budget    The largest number of cells to expand.
+     */
+    private void expand(int[] distances, int budget) {
+        while (head < tail && budget-- > 0) {
+            int cell = queue[head++];
+            int row = cell / gridSize;
+            int col = cell % gridSize;
+            int distance = distances[cell] + 1;
+            if (row > 0) {
+                visit(distances, cell - gridSize, row - 1, col, distance);
+            }
+            if (row < gridSize - 1) {
+                visit(distances, cell + gridSize, row + 1, col, distance);
+            }
+            if (col > 0) {
+                visit(distances, cell - 1, row, col - 1, distance);
+            }
+            if (col < gridSize - 1) {
+                visit(distances, cell + 1, row, col + 1, distance);
+            }
+        }
+    }
+
+    private void visit(int[] distances, int cell, int row, int col, int distance) {
+        if (distances[cell] == UNREACHABLE && !obstacles.isBlocked(row, col)) {
+            distances[cell] = distance;
+            queue[tail++] = cell;
+        }
+    }
+
+    /**
+     * This method is used to find the step that brings a ranger closest to yogi.
+     * The directions are tried up, down, left, right, and the first of equally good steps is taken.
+     *
+     * @param row The row of the ranger.
+     * @param col The column of the ranger.
+     * @return 0 for up, 1 for down, 2 for left, 3 for right, or -1 if no step brings the ranger closer.
+     */
+    public int nextStep(int row, int col) {
+        int cell = row * gridSize + col;
+        int best = current[cell];
+        int direction = -1;
+        if (row > 0 && current[cell - gridSize] < best) {
+            best = current[cell - gridSize];
+            direction = 0;
+        }
+        if (row < gridSize - 1 && current[cell + gridSize] < best) {
+            best = current[cell + gridSize];
+            direction = 1;
+        }
+        if (col > 0 && current[cell - 1] < best) {
+            best = current[cell - 1];
+            direction = 2;
+        }
+        if (col < gridSize - 1 && current[cell + 1] < best) {
+            direction = 3;
+        }
+        return direction;
+    }
+
+    /**
+     * This method is used to get the distance of a cell from yogi in the field the rangers follow.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The number of steps, or UNREACHABLE.
+     */
+    public int distance(int row, int col) {
+        return current[row * gridSize + col];
+    }
+
+    public boolean isBuilding() {
+        return building;
+    }
+
+    public long getBuilds() {
+        return builds;
+    }
+}
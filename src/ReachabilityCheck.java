@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/**
+ * This class is used to check that every basket of a generated level can be reached by yogi.
+ * The obstacles are kept as one bit per cell, 64 cells of a row in a long, and the cells yogi can reach
+ * are found with a flood fill that works on whole words: a row takes the reached cells of the row above or below
+ * as seeds and spreads them along its open cells with one addition per word, which carries a seed to the end of
+ * its run of open cells. The rows are swept down and up until nothing changes, so a level with few turns
+ * is checked in a handful of passes over a few bits per cell.
+ */
+class ReachabilityCheck {
+    private final int gridSize;
+    private final int words;
+    private final long lastWordMask;
+    private final long[] open;
+    private final long[] reached;
+    private final long[] seeds;
+    private long checks;
+    private long rejections;
+    private long checkNanos;
+    private long maxCheckNanos;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param gridSize The number of cells on each side of the grid.
+     */
+    public ReachabilityCheck(int gridSize) {
+        this.gridSize = gridSize;
+        this.words = (gridSize + 63) >>> 6;
+        this.lastWordMask = (gridSize & 63) == 0 ? -1L : (1L << (gridSize & 63)) - 1;
+        this.open = new long[gridSize * words];
+        this.reached = new long[gridSize * words];
+        this.seeds = new long[words];
+        clear();
+    }
+
+    /**
+     * This method is used to remove every obstacle.
+     */
+    public void clear() {
+        Arrays.fill(open, -1L);
+        for (int row = 0; row < gridSize; row++) {
+            open[row * words + words - 1] = lastWordMask;
+        }
+    }
+
+    /**
+     * This method is used to add an obstacle.
+     *
+     * @param row The row of the obstacle.
+     * @param col The column of the obstacle.
+     */
+    public void block(int row, int col) {
+        open[row * words + (col >>> 6)] &= ~(1L << col);
+    }
+
+    /**
+     * This method is used to check that every basket can be reached from the start cell.
+     * Only the first count baskets are checked. The fill stops as soon as every basket is reached,
+     * so only a failed check knows every cell that can be reached.
+     *
+     * @param startRow The row yogi starts on.
+     * @param startCol The column yogi starts on.
+     * @param rows     The rows of the baskets.
+     * @param cols     The columns of the baskets.
+     * @param count    The number of baskets.
+     * @return True if every basket can be reached, false otherwise.
+     */
+    public boolean check(int startRow, int startCol, int[] rows, int[] cols, int count) {
+        long start = System.nanoTime();
+        Arrays.fill(reached, 0);
+        if ((open[startRow * words + (startCol >>> 6)] & 1L << startCol) != 0) {
+            reached[startRow * words + (startCol >>> 6)] = 1L << startCol;
+            expandRow(startRow, startRow, true);
+            boolean changed = true;
+            while (changed && !reachesAll(rows, cols, count)) {
+                changed = false;
+                for (int row = 1; row < gridSize; row++) {
+                    changed |= expandRow(row, row - 1, false);
+                }
+                if (!changed || reachesAll(rows, cols, count)) {
+                    break;
+                }
+                changed = false;
+                for (int row = gridSize - 2; row >= 0; row--) {
+                    changed |= expandRow(row, row + 1, false);
+                }
+            }
+        }
+        boolean reachable = reachesAll(rows, cols, count);
+        long nanos = System.nanoTime() - start;
+        checks++;
+        checkNanos += nanos;
+        maxCheckNanos = Math.max(maxCheckNanos, nanos);
+        if (!reachable) {
+            rejections++;
+        }
+        return reachable;
+    }
+
+    private boolean reachesAll(int[] rows, int[] cols, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!isReachable(rows[i], cols[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method is used to add the reached cells of a neighbouring row to a row
+     * and spread them to the ends of their runs of open cells.
+     * Adding the seeds to the open cells carries every seed up to the end of its run, and the cells the carry
+     * passed through are the cells reached to the right of the seed. The carry out of a word continues into the next word.
+     * The same is done with the bits reversed for the cells to the left, but only for the words where an open cell
+     * on the left of a reached cell is not reached yet, which are few once the rows above have been filled.
+     *
+     * @param row       The row.
+     * @param neighbour The row above or below it.
+     * @param spread    True to spread the reached cells of the row even if the neighbour adds none.
+     * @return True if the row has reached new cells.
+     */
+    private boolean expandRow(int row, int neighbour, boolean spread) {
+        int base = row * words;
+        int neighbourBase = neighbour * words;
+        boolean grows = spread;
+        long carry = 0;
+        for (int word = 0; word < words; word++) {
+            long current = reached[base + word];
+            long cells = open[base + word];
+            long seed = current | reached[neighbourBase + word] & cells;
+            grows |= seed != current;
+            long sum = cells + seed + carry;
+            seeds[word] = cells & ~sum | seed;
+            carry = (cells & seed | (cells | seed) & ~sum) >>> 63;
+        }
+        if (!grows) {
+            return false;
+        }
+        carry = 0;
+        for (int word = words - 1; word >= 0; word--) {
+            long cells = open[base + word];
+            long filled = seeds[word];
+            if (carry != 0 || (filled >>> 1 & cells & ~filled) != 0) {
+                long reversedCells = Long.reverse(cells);
+                long seed = Long.reverse(filled);
+                long sum = reversedCells + seed + carry;
+                filled = Long.reverse(reversedCells & ~sum | seed);
+            }
+            reached[base + word] = filled;
+            carry = word > 0 && (filled & 1) != 0 && (open[base + word - 1] & ~seeds[word - 1]) < 0 ? 1 : 0;
+        }
+        return grows;
+    }
+
+    /**
+     * This method is used to check if a cell was reached by the last check.
+     * After a failed check this is true for every cell yogi can walk to.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return True if yogi can walk to the cell.
+     */
+    public boolean isReachable(int row, int col) {
+        return (reached[row * words + (col >>> 6)] & 1L << col) != 0;
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    public long getRejections() {
+        return rejections;
+    }
+
+    /**
+     * This method is used to get the share of generated layouts in which a basket could not be reached.
+     *
+     * @return The rejection rate, from 0 to 1.
+     */
+    public double getRejectionRate() {
+        return checks == 0 ? 0 : (double) rejections / checks;
+    }
+
+    /**
+     * This method is used to describe the counters of the check.
+     *
+     * @return A one line summary of the counters.
+     */
+    @Override
+    public String toString() {
+        return String.format("Reachability: %d checks, %d rejected (%.2f%%), %.1f us average, %.1f us max",
+                checks, rejections, getRejectionRate() * 100, checks == 0 ? 0 : checkNanos / 1000.0 / checks,
+                maxCheckNanos / 1000.0);
+    }
+}
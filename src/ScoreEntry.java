@@ -0,0 +1,61 @@
+/**
+ * This class is used to hold one high score.
+ */
+class ScoreEntry {
+    private final String id;
+    private final String playerName;
+    private final int score;
+    private final int time;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param playerName The name of the player.
+     * @param score      The score of the player.
+     * @param time       The time taken by the player to complete the game, in seconds.
+     */
+    public ScoreEntry(String playerName, int score, int time) {
+        this(null, playerName, score, time);
+    }
+
+    /**
+     * This is the constructor of the class for a score that was read from the database.
+     *
+     * @param id         The id of the score in the database.
+     * @param playerName The name of the player.
+     * @param score      The score of the player.
+     * @param time       The time taken by the player to complete the game, in seconds.
+     */
+    public ScoreEntry(String id, String playerName, int score, int time) {
+        this.id = id;
+        this.playerName = playerName;
+        this.score = score;
+        this.time = time;
+    }
+
+    /**
+     * This method is used to get the id of the score in the database.
+     *
+     * @return The id, or null if the score has not been read from the database.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return playerName + " " + score + " (" + time + " seconds)";
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This interface is used to save high scores and to ask for the best ones.
+ * The default store keeps the scores in local files, so the game needs no database server.
+ * The JDBC store keeps them in a database table.
+ */
+interface ScoreStore extends AutoCloseable {
+
+    /**
+     * This method is used to save scores.
+     * Either every score is saved or none is.
+     *
+     * @param entries The scores to save.
+     * @throws IOException If the scores could not be saved.
+     */
+    void addAll(List<ScoreEntry> entries) throws IOException;
+
+    /**
+     * This method is used to get the best scores.
+     * Equal scores are ordered by the time they were saved, oldest first.
+     *
+     * @param count The largest number of scores to return.
+     * @return The best scores, best first.
+     * @throws IOException If the scores could not be read.
+     */
+    List<ScoreEntry> topScores(int count) throws IOException;
+
+    /**
+     * This method is used to get the rank that a score would have.
+     *
+     * @param score The score.
+     * @return One more than the number of saved scores that are higher.
+     * @throws IOException If the scores could not be read.
+     */
+    long rankOf(int score) throws IOException;
+
+    /**
+     * This method is used to get the number of saved scores.
+     *
+     * @return The number of saved scores.
+     * @throws IOException If the scores could not be counted.
+     */
+    long size() throws IOException;
+
+    /**
+     * This method is used to release the files or connections of the store.
+     */
+    @Override
+    void close();
+
+    /**
+     * This method is used to open the store chosen by the settings.
+     * If the local store cannot be opened, the database is used instead.
+     *
+     * @param config The settings.
+     * @return The store.
+     */
+    static ScoreStore open(DatabaseConfig config) {
+        if (config.isLocal()) {
+            try {
+                return new LocalScoreStore(new File(config.getLocalDirectory()));
+            } catch (IOException e) {
+                System.out.println("Failed to open the local score store, using the database instead.");
+                e.printStackTrace();
+            }
+        }
+        return new JdbcScoreStore(new ConnectionPool(config, 2));
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to save high scores to the score store in the background.
+ * Submitting a score only puts it into a bounded queue, so the game never waits for the store.
+ * A writer thread takes the scores from the queue and inserts them in batches.
+ * Scores that cannot be written, because the store is unavailable or the queue is full,
+ * are appended to a local journal file, which is replayed as soon as the store can be reached again.
+ */
+class ScoreWriter implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int BATCH_SIZE = 32;
+    private static final long POLL_MILLIS = 200;
+    private static final long RETRY_MILLIS = 30_000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+
+    private final ScoreStore store;
+    private final File journal;
+    private final BlockingQueue<ScoreEntry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Object journalLock = new Object();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long written;
+    private volatile long journaled;
+    private long lastFailureMillis;
+
+    /**
+     * This is the constructor of the class.
+     * It starts the writer thread, which first replays the scores left in the journal.
+     *
+     * @param store   The store that the scores are saved in.
+     * @param journal The journal file for the scores that could not be written.
+     */
+    public ScoreWriter(ScoreStore store, File journal) {
+        this.store = store;
+        this.journal = journal;
+        this.thread = new Thread(this::run, "score-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * This method is used to save a score without waiting for the store.
+     * If the queue is full or the writer is closed, the score goes straight to the journal.
+     *
+     * @param entry The score to save.
+     */
+    public void submit(ScoreEntry entry) {
+        if (!running || !queue.offer(entry)) {
+            List<ScoreEntry> entries = new ArrayList<>(1);
+            entries.add(entry);
+            appendToJournal(entries);
+        }
+    }
+
+    /**
+     * This method is used to run the writer thread.
+     * It writes the queued scores in batches and replays the journal after every successful batch
+     * and every RETRY_MILLIS while the store is unavailable.
+     */
+    private void run() {
+        List<ScoreEntry> batch = new ArrayList<>(BATCH_SIZE);
+        replayJournal();
+        while (running || !queue.isEmpty()) {
+            ScoreEntry first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) {
+                if (System.currentTimeMillis() - lastFailureMillis >= RETRY_MILLIS) {
+                    replayJournal();
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            if (writeBatch(batch)) {
+                replayJournal();
+            } else {
+                appendToJournal(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * This method is used to save scores in the store.
+     * The time of the round trip to the store is recorded in the GameMetrics, whether it worked or not.
+     *
+     * @param entries The scores to save.
+     * @return True if every score was saved, false if nothing was saved.
+     */
+    private boolean writeBatch(List<ScoreEntry> entries) {
+        long start = System.nanoTime();
+        try {
+            store.addAll(entries);
+            written += entries.size();
+            return true;
+        } catch (IOException e) {
+            lastFailureMillis = System.currentTimeMillis();
+            System.out.println("Failed to save the scores, they are kept in " + journal + ": " + e.getMessage());
+            return false;
+        } finally {
+            GameMetrics.recordSince(GameMetrics.Path.SCORE_WRITE, start);
+        }
+    }
+
+    /**
+     * This method is used to append scores to the journal file.
+     * Every record is the player name, the score and the time, and the file is synced to disk.
+     *
+     * @param entries The scores to append.
+     */
+    private void appendToJournal(List<ScoreEntry> entries) {
+        synchronized (journalLock) {
+            try (FileOutputStream file = new FileOutputStream(journal, true);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                for (ScoreEntry entry : entries) {
+                    out.writeUTF(entry.getPlayerName());
+                    out.writeInt(entry.getScore());
+                    out.writeInt(entry.getTime());
+                }
+                out.flush();
+                file.getFD().sync();
+                journaled += entries.size();
+            } catch (IOException e) {
+                System.out.println("Failed to write the score journal, " + entries.size() + " score(s) lost.");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * This method is used to write the scores of the journal to the store.
+     * The journal is written in one transaction, so a failure leaves it as it was and no score is written twice.
+     * The store is not called while the journal is locked, and records appended meanwhile are kept.
+     */
+    private void replayJournal() {
+        List<ScoreEntry> entries;
+        long replayedLength;
+        synchronized (journalLock) {
+            if (!journal.isFile() || journal.length() == 0) {
+                return;
+            }
+            replayedLength = journal.length();
+            entries = readJournal();
+        }
+        if (!entries.isEmpty() && !writeBatch(entries)) {
+            return;
+        }
+        synchronized (journalLock) {
+            try {
+                if (journal.length() == replayedLength) {
+                    Files.delete(journal.toPath());
+                } else {
+                    byte[] bytes = Files.readAllBytes(journal.toPath());
+                    byte[] appended = new byte[bytes.length - (int) replayedLength];
+                    System.arraycopy(bytes, (int) replayedLength, appended, 0, appended.length);
+                    Files.write(journal.toPath(), appended);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * This method is used to read every complete record of the journal.
+     * A record cut off by a crash at the end of the file is ignored.
+     *
+     * @return The scores of the journal.
+     */
+    private List<ScoreEntry> readJournal() {
+        List<ScoreEntry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            while (true) {
+                entries.add(new ScoreEntry(in.readUTF(), in.readInt(), in.readInt()));
+            }
+        } catch (EOFException e) {
+            // end of the journal
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return entries;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getJournaled() {
+        return journaled;
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * This method is used to stop the writer.
+     * It waits a moment for the queued scores to be written and moves the rest to the journal.
+     * The store is shared, so it is closed by its owner.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<ScoreEntry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            appendToJournal(rest);
+        }
+    }
+}
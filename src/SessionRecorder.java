@@ -0,0 +1,174 @@
+import java.io.*;
+
+/**
+ * This class is used to record a game session, so it can be replayed exactly.
+ * The file starts with the seed and the settings of the model, followed by one small record for every
+ * input of the player, every level or difficulty chosen from the menu and every new game, each stamped with
+ * the tick it happened at. After every tick that changed the game and after every input, a checksum of the model
+ * is recorded, so a replay notices the exact tick where it stops matching the recording.
+ * <p>
+ * A record is the number of ticks since the previous record as a variable-length number, an operation byte
+ * and its argument, so a minute of play usually takes well under a kilobyte.
+ */
+class SessionRecorder implements AutoCloseable {
+    static final int MAGIC = 0x59524543;
+    static final int VERSION = 3;
+    static final int OP_LEVEL = 5;
+    static final int OP_DIFFICULTY = 6;
+    static final int OP_NEW_GAME = 7;
+    static final int OP_CHECKSUM = 8;
+    static final int OP_END = 9;
+    private static final long FLUSH_TICKS = 64;
+
+    private final File file;
+    private final DataOutputStream out;
+    private long lastTick;
+    private long lastFlushTick;
+    private long records;
+    private boolean closed;
+
+    /**
+     * This is the constructor of the class.
+     * It writes the header of the recording.
+     *
+     * @param file           The file to record into.
+     * @param model          The model, which must have just been restarted with its seed.
+     * @param ticksPerSecond The number of ticks per second of the game loop.
+     * @throws IOException If the file could not be written.
+     */
+    public SessionRecorder(File file, GameModel model, int ticksPerSecond) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(model.getGridSize());
+        out.writeLong(model.getSeed());
+        out.writeByte(model.getDifficulty().ordinal());
+        out.writeByte(model.getPursuitPercent());
+        out.writeInt(model.getTicksPerRangerMove());
+        out.writeInt(model.getPursuitBudget());
+        out.writeInt(ticksPerSecond);
+        out.flush();
+    }
+
+    /**
+     * This method is used to record an input of the player.
+     *
+     * @param model The model, before the input is applied.
+     * @param input The input.
+     */
+    public void recordInput(GameModel model, GameModel.Input input) {
+        write(model.getTickCount(), input.ordinal(), -1);
+    }
+
+    /**
+     * This method is used to record a level chosen from the menu.
+     *
+     * @param model The model, after the level has been set.
+     * @param level The level.
+     */
+    public void recordLevel(GameModel model, int level) {
+        write(model.getTickCount(), OP_LEVEL, level);
+    }
+
+    /**
+     * This method is used to record a difficulty chosen from the menu.
+     *
+     * @param model      The model, after the difficulty has been set.
+     * @param difficulty The difficulty.
+     */
+    public void recordDifficulty(GameModel model, Difficulty difficulty) {
+        write(model.getTickCount(), OP_DIFFICULTY, difficulty.ordinal());
+    }
+
+    /**
+     * This method is used to record a new game.
+     *
+     * @param model The model, after the new game has started.
+     */
+    public void recordNewGame(GameModel model) {
+        write(model.getTickCount(), OP_NEW_GAME, -1);
+    }
+
+    /**
+     * This method is used to record the checksum of the model.
+     *
+     * @param model The model.
+     */
+    public void recordChecksum(GameModel model) {
+        write(model.getTickCount(), OP_CHECKSUM, model.checksum());
+    }
+
+    /**
+     * This method is used to write one record.
+     * The file is flushed at most every FLUSH_TICKS ticks, so recording does not slow the game down.
+     *
+     * @param tick     The tick of the record.
+     * @param op       The operation.
+     * @param argument The argument, or -1 if the operation has none.
+     */
+    private synchronized void write(long tick, int op, int argument) {
+        if (closed) {
+            return;
+        }
+        try {
+            writeVarLong(tick - lastTick);
+            lastTick = tick;
+            out.writeByte(op);
+            if (op == OP_CHECKSUM) {
+                out.writeInt(argument);
+            } else if (op == OP_LEVEL || op == OP_DIFFICULTY) {
+                out.writeByte(argument);
+            }
+            records++;
+            if (tick - lastFlushTick >= FLUSH_TICKS) {
+                out.flush();
+                lastFlushTick = tick;
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to write the recording " + file + ", recording stopped.");
+            e.printStackTrace();
+            closed = true;
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * This method is used to end the recording.
+     * The last record holds the tick the session ended at, so the replay runs for the same number of ticks.
+     *
+     * @param model The model.
+     */
+    public synchronized void close(GameModel model) {
+        if (closed) {
+            return;
+        }
+        write(model.getTickCount(), OP_END, -1);
+        close();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+            System.out.println("Recorded " + records + " records into " + file + " (" + file.length() + " bytes)");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
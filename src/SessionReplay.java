@@ -0,0 +1,251 @@
+import javax.swing.*;
+import java.awt.*;
+import java.io.*;
+
+/**
+ * This class is used to replay a session recorded by the SessionRecorder.
+ * The replay builds a model with the recorded seed and settings and feeds it the recorded inputs at the
+ * recorded ticks. Every recorded checksum is compared with the checksum of the replayed model, and the first
+ * difference stops the replay with the tick where it happened.
+ * <p>
+ * Usage: {@code java SessionReplay session.yrec} replays as fast as possible without drawing,
+ * {@code java SessionReplay session.yrec --render} shows the replay in a window at the recorded speed.
+ */
+public class SessionReplay implements AutoCloseable {
+    private final DataInputStream in;
+    private final int gridSize;
+    private final long seed;
+    private final Difficulty difficulty;
+    private final int pursuitPercent;
+    private final int ticksPerRangerMove;
+    private final int pursuitBudget;
+    private final int ticksPerSecond;
+    private long nextTick;
+    private int nextOp = -1;
+    private int nextArgument;
+    private boolean ended;
+    private long endTick = -1;
+    private long verifiedChecksums;
+
+    /**
+     * This is the constructor of the class.
+     * It reads the header of the recording.
+     *
+     * @param file The recording.
+     * @throws IOException If the file could not be read or is not a recording.
+     */
+    public SessionReplay(File file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        if (in.readInt() != SessionRecorder.MAGIC || in.readUnsignedByte() != SessionRecorder.VERSION) {
+            in.close();
+            throw new IOException(file + " is not a recording of this version of the game.");
+        }
+        gridSize = in.readInt();
+        seed = in.readLong();
+        difficulty = Difficulty.values()[in.readUnsignedByte()];
+        pursuitPercent = in.readUnsignedByte();
+        ticksPerRangerMove = in.readInt();
+        pursuitBudget = in.readInt();
+        ticksPerSecond = in.readInt();
+        readNext();
+    }
+
+    /**
+     * This method is used to create a model in the state the recording started in.
+     *
+     * @return The model.
+     */
+    public GameModel createModel() {
+        GameModel model = new GameModel(gridSize, seed);
+        prepare(model);
+        return model;
+    }
+
+    /**
+     * This method is used to bring a model with the recorded grid size into the state the recording started in.
+     *
+     * @param model The model.
+     */
+    public void prepare(GameModel model) {
+        if (model.getDifficulty() != difficulty) {
+            model.setDifficulty(difficulty);
+        }
+        model.setPursuitPercent(pursuitPercent);
+        model.setTicksPerRangerMove(ticksPerRangerMove);
+        model.setPursuitBudget(pursuitBudget);
+        model.restart(seed);
+    }
+
+    /**
+     * This method is used to read the next record.
+     * A missing end record, for example after a crash, ends the replay after the last complete record.
+     */
+    private void readNext() throws IOException {
+        try {
+            nextTick += readVarLong();
+            nextOp = in.readUnsignedByte();
+            if (nextOp == GameModel.Input.NONE.ordinal() || nextOp > SessionRecorder.OP_END) {
+                throw new IOException("The recording is damaged at tick " + nextTick + ": unknown record " + nextOp);
+            }
+            if (nextOp == SessionRecorder.OP_CHECKSUM) {
+                nextArgument = in.readInt();
+            } else if (nextOp == SessionRecorder.OP_LEVEL || nextOp == SessionRecorder.OP_DIFFICULTY) {
+                nextArgument = in.readUnsignedByte();
+            }
+            if (nextOp == SessionRecorder.OP_END) {
+                endTick = nextTick;
+                ended = true;
+            }
+        } catch (EOFException e) {
+            ended = true;
+        }
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * This method is used to apply every record that is due at the current tick of the model.
+     *
+     * @param model The replayed model.
+     * @return The most important event caused by the records.
+     * @throws IOException           If the recording could not be read or is damaged.
+     * @throws IllegalStateException If a checksum does not match.
+     */
+    public GameModel.Event applyDue(GameModel model) throws IOException {
+        GameModel.Event result = GameModel.Event.NONE;
+        while (!ended && nextTick == model.getTickCount()) {
+            GameModel.Event event = GameModel.Event.NONE;
+            switch (nextOp) {
+                case SessionRecorder.OP_LEVEL:
+                    model.setLevel(nextArgument);
+                    break;
+                case SessionRecorder.OP_DIFFICULTY:
+                    model.setDifficulty(Difficulty.values()[nextArgument]);
+                    break;
+                case SessionRecorder.OP_NEW_GAME:
+                    model.newGame();
+                    break;
+                case SessionRecorder.OP_CHECKSUM:
+                    int checksum = model.checksum();
+                    if (checksum != nextArgument) {
+                        throw new IllegalStateException("The replay differs from the recording at tick " + nextTick
+                                + ": checksum " + Integer.toHexString(checksum) + " instead of " + Integer.toHexString(nextArgument));
+                    }
+                    verifiedChecksums++;
+                    break;
+                default:
+                    event = model.moveYogi(GameModel.Input.values()[nextOp]);
+                    break;
+            }
+            if (event.ordinal() > result.ordinal()) {
+                result = event;
+            }
+            readNext();
+        }
+        if (!ended && nextTick < model.getTickCount()) {
+            throw new IllegalStateException("The replay differs from the recording at tick " + nextTick
+                    + ": the model is already at tick " + model.getTickCount());
+        }
+        return result;
+    }
+
+    /**
+     * This method is used to check if the replay has reached the end of the recording.
+     *
+     * @param model The replayed model.
+     * @return True if every record has been applied and the model has reached the last tick.
+     */
+    public boolean isFinished(GameModel model) {
+        return ended && model.getTickCount() >= endTick;
+    }
+
+    public long getVerifiedChecksums() {
+        return verifiedChecksums;
+    }
+
+    public int getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * This method is used to replay a recording as fast as possible without drawing.
+     *
+     * @param replay The replay.
+     * @return The number of ticks replayed.
+     * @throws IOException If the recording could not be read.
+     */
+    static long replayHeadless(SessionReplay replay) throws IOException {
+        GameModel model = replay.createModel();
+        while (true) {
+            replay.applyDue(model);
+            if (replay.isFinished(model)) {
+                return model.getTickCount();
+            }
+            model.tick();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java SessionReplay <recording> [--render]");
+            return;
+        }
+        File file = new File(args[0]);
+        boolean render = args.length > 1 && args[1].equals("--render");
+        SessionReplay replay;
+        try {
+            replay = new SessionReplay(file);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (render) {
+            SwingUtilities.invokeLater(() -> showReplay(replay, file));
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            long ticks = replayHeadless(replay);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Replayed %d ticks (%.1f s of play) in %.3f s, %.0fx real time, %d checksums verified%n",
+                    ticks, (double) ticks / replay.getTicksPerSecond(), seconds,
+                    ticks / (double) replay.getTicksPerSecond() / seconds, replay.getVerifiedChecksums());
+        } catch (IllegalStateException | IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        } finally {
+            replay.close();
+        }
+    }
+
+    /**
+     * This method is used to show the replay in a window at the recorded speed.
+     */
+    private static void showReplay(SessionReplay replay, File file) {
+        JFrame frame = new JFrame("Yogi Bear Replay - " + file.getName());
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(555, 615);
+        frame.setLocationRelativeTo(null);
+        System.setProperty("yogi.tickRate", Integer.toString(replay.getTicksPerSecond()));
+        GamePanel panel = new GamePanel(new GameModel(replay.gridSize, replay.seed));
+        panel.startReplay(replay);
+        frame.add(panel, BorderLayout.CENTER);
+        frame.setVisible(true);
+    }
+}
@@ -0,0 +1,421 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * This class is used to run the real game for hours with synthetic key input and to watch it for leaks and slowdowns.
+ * The keys are handed to the key listener of the game panel on the event dispatch thread at a fixed rate:
+ * mostly moves towards a basket, now and then a pause, Enter for every message and Escape for the name of the
+ * high score table. Every few minutes the game is restarted, or a random level is chosen, through the menu actions,
+ * so the crowded later levels are played too and a leaked game loop timer adds up quickly.
+ * The game runs in its window, or, in a headless JVM, in a panel without a window.
+ * <p>
+ * Every sample interval, the live heap after a collection, the time and number of collections, the number of threads,
+ * the number of running game loop timers, the delay of the synthetic key events on the event dispatch thread and the
+ * frame times are appended to a CSV file. The game metrics are reset after every sample, so JMX shows the last interval.
+ * At the end, the first and the last quarter of the samples after the warm-up are compared, a metric that has grown
+ * beyond its tolerance is flagged, and the exit code is 1 if anything is flagged.
+ * <p>
+ * Usage: {@code java SoakRunner [output.csv]}.
+ * The system properties {@code soak.minutes}, {@code soak.sampleSeconds}, {@code soak.keysPerSecond},
+ * {@code soak.restartSeconds}, {@code soak.difficulty} and {@code soak.seed} change the parameters, and
+ * {@code yogi.gridSize} is 64 unless it is set.
+ */
+public class SoakRunner {
+    private static final int[] MOVE_KEYS = {KeyEvent.VK_UP, KeyEvent.VK_DOWN, KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT};
+    private static final int[] MOVE_ROWS = {-1, 1, 0, 0};
+    private static final int[] MOVE_COLS = {0, 0, -1, 1};
+    private static final double WARM_UP_FRACTION = 0.1;
+    private static final int MIN_TREND_SAMPLES = 8;
+    private static final double MIB = 1024 * 1024;
+
+    /**
+     * The values of one sample.
+     */
+    static final class Sample {
+        double minutes;
+        double liveHeapMiB;
+        long collections;
+        long collectionMillis;
+        int threads;
+        int runningLoops;
+        double edtP99Millis;
+        double edtMaxMillis;
+        double frameP50Millis;
+        double frameP99Millis;
+        long lateFrames;
+        long keys;
+        long skippedKeys;
+        long messages;
+        long restarts;
+        int level;
+    }
+
+    private final GamePanel panel;
+    private final Runnable restart;
+    private final Random random = new Random(Long.getLong("soak.seed", 1));
+    private final LatencyHistogram edtDelay = new LatencyHistogram();
+    private final AtomicInteger pendingKeys = new AtomicInteger();
+    private final List<Sample> samples = new ArrayList<>();
+    private final long restartNanos = Long.getLong("soak.restartSeconds", 120) * 1_000_000_000L;
+    private long lastRestartNanos = System.nanoTime();
+    private int heldKey = KeyEvent.VK_UNDEFINED;
+    private volatile long keys;
+    private volatile long skippedKeys;
+    private volatile long messages;
+    private volatile long restarts;
+    private long lastCollections;
+    private long lastCollectionMillis;
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param panel   The game panel that gets the keys.
+     * @param restart The action that restarts the game, as the menu item does.
+     */
+    SoakRunner(GamePanel panel, Runnable restart) {
+        this.panel = panel;
+        this.restart = restart;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String output = args.length > 0 ? args[0] : "soak.csv";
+        if (System.getProperty("yogi.gridSize") == null) {
+            System.setProperty("yogi.gridSize", "64");
+        }
+        Difficulty difficulty = Difficulty.valueOf(System.getProperty("soak.difficulty", "DENSE").toUpperCase());
+        GameMetrics.register();
+
+        AssetLoader assets = new AssetLoader();
+        CountDownLatch loaded = new CountDownLatch(1);
+        assets.addProgressListener(() -> {
+            if (assets.isDone()) {
+                loaded.countDown();
+            }
+        });
+        if (assets.isDone()) {
+            loaded.countDown();
+        }
+        loaded.await();
+
+        SoakRunner[] runner = new SoakRunner[1];
+        SwingUtilities.invokeAndWait(() -> {
+            GamePanel panel;
+            Runnable restart;
+            if (GraphicsEnvironment.isHeadless()) {
+                panel = new GamePanel(assets);
+                restart = panel::initializeGame;
+            } else {
+                YogiBearGUI game = new YogiBearGUI(assets);
+                panel = game.getGamePanel();
+                restart = game::restartGame;
+            }
+            panel.setDifficultyFromMenu(difficulty);
+            runner[0] = new SoakRunner(panel, restart);
+        });
+        boolean flagged = runner[0].run(Long.getLong("soak.minutes", 60), output);
+        System.exit(flagged ? 1 : 0);
+    }
+
+    /**
+     * This method is used to drive the game and take the samples until the time is up, and to report the trends.
+     *
+     * @param minutes The length of the run.
+     * @param output  The CSV file of the samples.
+     * @return True if a metric has grown beyond its tolerance.
+     */
+    boolean run(long minutes, String output) throws Exception {
+        int keysPerSecond = Math.max(1, Integer.getInteger("soak.keysPerSecond", 30));
+        long sampleMillis = Math.max(1, Long.getLong("soak.sampleSeconds", 30)) * 1000;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MINUTES.toNanos(minutes);
+        ScheduledExecutorService input = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "soak-input");
+            thread.setDaemon(true);
+            return thread;
+        });
+        input.scheduleAtFixedRate(() -> postKey(keysPerSecond), 0, 1_000_000_000L / keysPerSecond, TimeUnit.NANOSECONDS);
+        sampleCollections();
+        GameMetrics.get().reset();
+
+        try (PrintWriter csv = new PrintWriter(new File(output), "UTF-8")) {
+            csv.println("minutes,liveHeapMiB,collections,collectionMillis,threads,runningLoops,edtP99Millis,edtMaxMillis,"
+                    + "frameP50Millis,frameP99Millis,lateFrames,keys,skippedKeys,messages,restarts,level");
+            while (System.nanoTime() < end) {
+                Thread.sleep(Math.min(sampleMillis, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()) + 1));
+                Sample sample = takeSample((System.nanoTime() - start) / 60e9);
+                samples.add(sample);
+                csv.printf("%.2f,%.1f,%d,%d,%d,%d,%.2f,%.2f,%.2f,%.2f,%d,%d,%d,%d,%d,%d%n", sample.minutes, sample.liveHeapMiB,
+                        sample.collections, sample.collectionMillis, sample.threads, sample.runningLoops, sample.edtP99Millis,
+                        sample.edtMaxMillis, sample.frameP50Millis, sample.frameP99Millis, sample.lateFrames, sample.keys,
+                        sample.skippedKeys, sample.messages, sample.restarts, sample.level);
+                csv.flush();
+                System.out.printf("%6.1f min  live heap %7.1f MiB  threads %3d  loops %d  EDT p99 %6.2f ms  frame p99 %6.2f ms  "
+                                + "keys %d  messages %d  restarts %d%n", sample.minutes, sample.liveHeapMiB, sample.threads,
+                        sample.runningLoops, sample.edtP99Millis, sample.frameP99Millis, sample.keys, sample.messages,
+                        sample.restarts);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            input.shutdownNow();
+        }
+        return report();
+    }
+
+    /**
+     * This method is used to hand one key to the event dispatch thread.
+     * The time until the event dispatch thread runs it is the delay of the event queue. When the event dispatch thread
+     * falls behind by more than a second of keys, keys are skipped instead of filling the event queue.
+     *
+     * @param keysPerSecond The rate of the keys.
+     */
+    private void postKey(int keysPerSecond) {
+        if (pendingKeys.get() >= keysPerSecond) {
+            skippedKeys++;
+            return;
+        }
+        pendingKeys.incrementAndGet();
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            pendingKeys.decrementAndGet();
+            edtDelay.record(System.nanoTime() - posted);
+            step();
+        });
+    }
+
+    /**
+     * This method is used to give the game the next key, depending on what it shows.
+     * It runs on the event dispatch thread.
+     */
+    private void step() {
+        keys++;
+        if (System.nanoTime() - lastRestartNanos >= restartNanos) {
+            lastRestartNanos = System.nanoTime();
+            restarts++;
+            releaseHeldKey();
+            if (random.nextBoolean()) {
+                restart.run();
+            } else {
+                panel.setLevelFromMenu(1 + random.nextInt(panel.getModel().getLastLevel()));
+            }
+            return;
+        }
+        GameState state = panel.getState();
+        if (state == GameState.PLAYING) {
+            if (random.nextInt(200) == 0) {
+                releaseHeldKey();
+                type(KeyEvent.VK_P);
+            } else {
+                hold(nextMove());
+            }
+        } else if (state == GameState.PAUSED) {
+            type(KeyEvent.VK_P);
+        } else if (state == GameState.ENTERING_NAME) {
+            messages++;
+            type(KeyEvent.VK_ESCAPE);
+        } else if (state.isConfirmedWithEnter()) {
+            messages++;
+            releaseHeldKey();
+            type(KeyEvent.VK_ENTER);
+        } else {
+            restarts++;
+            restart.run();
+        }
+    }
+
+    /**
+     * This method is used to pick a move. Three of four moves go towards the first basket that is left,
+     * the others go in a random direction, and a move onto an obstacle or next to a ranger is avoided if another
+     * move is safe, so the crowded levels are completed now and then and every kind of message is shown.
+     *
+     * @return The key of the move.
+     */
+    private int nextMove() {
+        GameModel model = panel.getModel();
+        int preferred = random.nextInt(MOVE_KEYS.length);
+        if (model.getNumBaskets() > 0 && random.nextInt(4) != 0) {
+            int rows = model.getBasketRow(0) - model.getYogiRow();
+            int cols = model.getBasketCol(0) - model.getYogiCol();
+            if (rows != 0 && (cols == 0 || random.nextBoolean())) {
+                preferred = rows < 0 ? 0 : 1;
+            } else if (cols != 0) {
+                preferred = cols < 0 ? 2 : 3;
+            }
+        }
+        for (int i = 0; i < MOVE_KEYS.length; i++) {
+            int move = (preferred + i) % MOVE_KEYS.length;
+            int row = model.getYogiRow() + MOVE_ROWS[move];
+            int col = model.getYogiCol() + MOVE_COLS[move];
+            if (row >= 0 && row < model.getGridSize() && col >= 0 && col < model.getGridSize()
+                    && !model.isObstacle(row, col) && !model.checkRangerCollision(row, col)) {
+                return MOVE_KEYS[move];
+            }
+        }
+        return MOVE_KEYS[preferred];
+    }
+
+    /**
+     * This method is used to press a key and keep it held until the next key, so the key repeat of the game is used too.
+     */
+    private void hold(int keyCode) {
+        if (keyCode != heldKey) {
+            releaseHeldKey();
+            panel.keyPressed(keyEvent(KeyEvent.KEY_PRESSED, keyCode));
+            heldKey = keyCode;
+        }
+    }
+
+    private void releaseHeldKey() {
+        if (heldKey != KeyEvent.VK_UNDEFINED) {
+            panel.keyReleased(keyEvent(KeyEvent.KEY_RELEASED, heldKey));
+            heldKey = KeyEvent.VK_UNDEFINED;
+        }
+    }
+
+    private void type(int keyCode) {
+        panel.keyPressed(keyEvent(KeyEvent.KEY_PRESSED, keyCode));
+        panel.keyReleased(keyEvent(KeyEvent.KEY_RELEASED, keyCode));
+    }
+
+    private KeyEvent keyEvent(int id, int keyCode) {
+        return new KeyEvent(panel, id, System.currentTimeMillis(), 0, keyCode, KeyEvent.CHAR_UNDEFINED);
+    }
+
+    /**
+     * This method is used to take a sample.
+     * The collections of the interval are read before the heap is collected for the live heap,
+     * so the forced collection is not counted in the next interval.
+     *
+     * @param minutes The minutes since the start of the run.
+     * @return The sample.
+     */
+    private Sample takeSample(double minutes) {
+        Sample sample = new Sample();
+        sample.minutes = minutes;
+        long collections = lastCollections;
+        long collectionMillis = lastCollectionMillis;
+        sampleCollections();
+        sample.collections = lastCollections - collections;
+        sample.collectionMillis = lastCollectionMillis - collectionMillis;
+        ManagementFactory.getMemoryMXBean().gc();
+        sample.liveHeapMiB = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / MIB;
+        sampleCollections();
+        sample.threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        sample.runningLoops = GameLoop.getRunningLoops();
+        sample.edtP99Millis = GameMetrics.millis(edtDelay.getPercentileNanos(99));
+        sample.edtMaxMillis = GameMetrics.millis(edtDelay.getMaxNanos());
+        edtDelay.reset();
+        LatencyHistogram frames = GameMetrics.Path.FRAME.getHistogram();
+        sample.frameP50Millis = GameMetrics.millis(frames.getPercentileNanos(50));
+        sample.frameP99Millis = GameMetrics.millis(frames.getPercentileNanos(99));
+        sample.lateFrames = GameMetrics.get().getLateFrames();
+        GameMetrics.get().reset();
+        sample.keys = keys;
+        sample.skippedKeys = skippedKeys;
+        sample.messages = messages;
+        sample.restarts = restarts;
+        sample.level = panel.getModel().getCurrentLevel();
+        return sample;
+    }
+
+    private void sampleCollections() {
+        lastCollections = 0;
+        lastCollectionMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            lastCollections += Math.max(0, collector.getCollectionCount());
+            lastCollectionMillis += Math.max(0, collector.getCollectionTime());
+        }
+    }
+
+    /**
+     * This method is used to print the trend of every watched metric.
+     * More than one running game loop at any sample is always flagged, because only one game is shown.
+     *
+     * @return True if a metric is flagged.
+     */
+    boolean report() {
+        System.out.println("Soak report: " + samples.size() + " samples, " + keys + " keys, " + skippedKeys + " skipped, "
+                + messages + " messages dismissed, " + restarts + " restarts");
+        int maxLoops = 0;
+        for (Sample sample : samples) {
+            maxLoops = Math.max(maxLoops, sample.runningLoops);
+        }
+        boolean flagged = maxLoops > 1;
+        System.out.printf("%-20s %s  at most %d running game loop timers%n", "gameLoopTimers", maxLoops > 1 ? "LEAK " : "ok   ",
+                maxLoops);
+        int first = (int) (samples.size() * WARM_UP_FRACTION);
+        if (samples.size() - first < MIN_TREND_SAMPLES) {
+            System.out.println("Too few samples after the warm-up for trends, at least " + MIN_TREND_SAMPLES + " are needed.");
+            return flagged;
+        }
+        flagged |= trend("liveHeapMiB", sample -> sample.liveHeapMiB, 0.2, 16, first);
+        flagged |= trend("threads", sample -> sample.threads, 0, 2, first);
+        flagged |= trend("collectionMillis", sample -> sample.collectionMillis, 1, 50, first);
+        flagged |= trend("edtP99Millis", sample -> sample.edtP99Millis, 1, 5, first);
+        flagged |= trend("frameP99Millis", sample -> sample.frameP99Millis, 0.5, 5, first);
+        return flagged;
+    }
+
+    /**
+     * This method is used to compare the median of a metric in the first and the last quarter of the samples
+     * after the warm-up. The metric is flagged if the last median exceeds the first one by more than the relative
+     * and the absolute tolerance together. The slope of a least squares line is printed per hour.
+     *
+     * @param name     The name of the metric.
+     * @param value    The value of the metric in a sample.
+     * @param relative The tolerated growth as a fraction of the first median.
+     * @param absolute The tolerated growth in the unit of the metric.
+     * @param first    The first sample after the warm-up.
+     * @return True if the metric is flagged.
+     */
+    private boolean trend(String name, ToDoubleFunction<Sample> value, double relative, double absolute, int first) {
+        int quarter = Math.max(1, (samples.size() - first) / 4);
+        double before = median(value, first, first + quarter);
+        double after = median(value, samples.size() - quarter, samples.size());
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        int n = samples.size() - first;
+        for (int i = first; i < samples.size(); i++) {
+            double x = samples.get(i).minutes / 60;
+            double y = value.applyAsDouble(samples.get(i));
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        double slope = denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+        boolean growing = after > before * (1 + relative) + absolute;
+        System.out.printf("%-20s %s  first quarter %.2f, last quarter %.2f, slope %+.2f per hour%n", name,
+                growing ? "GROWTH" : "ok    ", before, after, slope);
+        return growing;
+    }
+
+    private double median(ToDoubleFunction<Sample> value, int from, int to) {
+        double[] values = new double[to - from];
+        for (int i = from; i < to; i++) {
+            values[i - from] = value.applyAsDouble(samples.get(i));
+        }
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+}
@@ -0,0 +1,168 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is used to load and cache the sprites of the game.
+ * Every asset is decoded from disk only once, and every scaled copy is kept,
+ * so drawing a sprite never touches the filesystem or rescales an image.
+ * The panel scales its sprites with prescale when it is created or zoomed, so even the first paint at a size
+ * only looks them up.
+ * The scaled copies of a path are kept in an array indexed by the size, so looking a sprite up allocates nothing.
+ * With an asset loader, the images that were decoded at start-up are used instead of reading them again.
+ */
+class SpriteCache {
+    private final AssetLoader assets;
+    private final Map<String, BufferedImage> sources = new HashMap<>();
+    private final Map<String, Image[]> scaledSprites = new HashMap<>();
+    private long hits;
+    private long misses;
+    private int decodes;
+    private long decodeNanos;
+
+    /**
+     * This is the constructor of the class for a cache that reads the images from disk itself.
+     */
+    public SpriteCache() {
+        this(null);
+    }
+
+    /**
+     * This is the constructor of the class.
+     *
+     * @param assets The loader that has decoded the images, or null to read them from disk.
+     */
+    public SpriteCache(AssetLoader assets) {
+        this.assets = assets;
+    }
+
+    /**
+     * This method is used to get a sprite scaled to the given size.
+     * A sprite that was not prescaled is decoded and scaled by the first request for its path and size,
+     * which counts as a miss, and every later request returns the cached copy.
+     *
+     * @param path The path of the image asset.
+     * @param size The width and height of the sprite in pixels.
+     * @return The scaled sprite.
+     */
+    public Image get(String path, int size) {
+        Image[] sizes = scaledSprites.get(path);
+        if (sizes != null && size < sizes.length && sizes[size] != null) {
+            hits++;
+            return sizes[size];
+        }
+        misses++;
+        return prescale(path, size);
+    }
+
+    /**
+     * This method is used to decode and scale a sprite before it is drawn. A sprite that is cached already is kept.
+     *
+     * @param path The path of the image asset.
+     * @param size The width and height of the sprite in pixels.
+     * @return The scaled sprite.
+     */
+    public Image prescale(String path, int size) {
+        Image[] sizes = scaledSprites.get(path);
+        if (sizes == null || size >= sizes.length) {
+            sizes = sizes == null ? new Image[size + 1] : Arrays.copyOf(sizes, size + 1);
+            scaledSprites.put(path, sizes);
+        }
+        if (sizes[size] == null) {
+            sizes[size] = scale(load(path), size);
+        }
+        return sizes[size];
+    }
+
+    /**
+     * This method is used to load an image asset from the asset loader or from disk once.
+     *
+     * @param path The path of the image asset.
+     * @return The decoded image, or null if it could not be read.
+     */
+    private BufferedImage load(String path) {
+        if (sources.containsKey(path)) {
+            return sources.get(path);
+        }
+        long start = System.nanoTime();
+        BufferedImage image = null;
+        if (assets != null) {
+            image = assets.getImage(path);
+        } else {
+            try {
+                image = ImageIO.read(new File(path));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        decodeNanos += System.nanoTime() - start;
+        decodes++;
+        sources.put(path, image);
+        return image;
+    }
+
+    /**
+     * This method is used to scale an image into a compatible image of the given size.
+     * A compatible image matches the screen format, so Java2D can keep it in video memory.
+     *
+     * @param source The decoded image, or null if it could not be read.
+     * @param size   The width and height of the sprite in pixels.
+     * @return The scaled sprite, which is fully transparent if the source is missing.
+     */
+    private static Image scale(BufferedImage source, int size) {
+        BufferedImage sprite = createCompatibleImage(size, size);
+        if (source != null) {
+            Graphics2D g = sprite.createGraphics();
+            g.drawImage(source.getScaledInstance(size, size, Image.SCALE_AREA_AVERAGING), 0, 0, null);
+            g.dispose();
+        }
+        return sprite;
+    }
+
+    /**
+     * This method is used to create a translucent image in the format of the screen.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @return The new image.
+     */
+    static BufferedImage createCompatibleImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public int getDecodes() {
+        return decodes;
+    }
+
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * This method is used to describe the cache counters.
+     *
+     * @return A one line summary of the counters.
+     */
+    @Override
+    public String toString() {
+        return "Sprite cache: " + hits + " hits, " + misses + " misses, " + decodes + " decodes in "
+                + (decodeNanos / 1_000_000) + " ms";
+    }
+}
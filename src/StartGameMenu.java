@@ -13,8 +13,12 @@ public class StartGameMenu extends JFrame {
      * This is the constructor of the class.
      * It creates a new JFrame object and adds a background image to it.
      * It also adds two buttons to the frame, one to start the game and one to exit the game.
+     * The assets are still loading when the menu appears, so a progress bar is shown
+     * and the start button is enabled once everything is loaded.
+     *
+     * @param assets The loader of the images and the music.
      */
-    public StartGameMenu() {
+    public StartGameMenu(AssetLoader assets) {
         setTitle("Yogi Bear Game");
         setSize(600, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -22,11 +26,13 @@ public class StartGameMenu extends JFrame {
         setResizable(false);
 
         JPanel panel = new JPanel() {
-            private Image backgroundImage = new ImageIcon("assets/HomeScreen.jpg").getImage();
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
-                g.drawImage(backgroundImage, 0, 0, getWidth(), getHeight(), this);
+                Image backgroundImage = assets.getImageIfLoaded(AssetLoader.HOME_SCREEN_IMAGE);
+                if (backgroundImage != null) {
+                    g.drawImage(backgroundImage, 0, 0, getWidth(), getHeight(), this);
+                }
             }
         };
         panel.setLayout(new BorderLayout());
@@ -36,7 +42,7 @@ public class StartGameMenu extends JFrame {
         startGameButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                YogiBearGUI game = new YogiBearGUI();
+                YogiBearGUI game = new YogiBearGUI(assets);
                 game.setVisible(true);
                 dispose();
             }
@@ -50,10 +56,24 @@ public class StartGameMenu extends JFrame {
             }
         });
 
+        JProgressBar progressBar = new JProgressBar(0, assets.getTotal());
+        progressBar.setStringPainted(true);
+        Runnable showProgress = () -> {
+            progressBar.setValue(assets.getLoaded());
+            progressBar.setString("Loading " + assets.getLoaded() + " / " + assets.getTotal());
+            progressBar.setVisible(!assets.isDone());
+            startGameButton.setEnabled(assets.isDone());
+            panel.repaint();
+        };
+        assets.addProgressListener(showProgress);
+        showProgress.run();
+
         JPanel buttonPanel = new JPanel();
+        buttonPanel.add(progressBar);
         buttonPanel.add(startGameButton);
         buttonPanel.add(exitButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
         setVisible(true);
+        assets.logMilestone("Start menu shown");
     }
 }
@@ -1,6 +1,6 @@
 /**
  * This is the main class that runs the game.
- * It creates a new StartGameMenu object which is the main menu of the game.
+ * It registers the metrics of the game for JMX, starts loading the assets and creates a new StartGameMenu object which is the main menu of the game.
  * @version 1.0
  * @since 13/12/2023
  * @author Nahid Muradli
@@ -8,6 +8,7 @@
 
 public class YogiBear {
     public static void main(String[] args) {
-        new StartGameMenu();
+        GameMetrics.register();
+        new StartGameMenu(new AssetLoader());
     }
 }
@@ -1,11 +1,11 @@
-import javax.sound.sampled.*;
 import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
-import java.io.IOException;
-import java.sql.*;
 
 
 /**
@@ -15,50 +15,60 @@ import java.sql.*;
 public class YogiBearGUI extends JFrame {
     private static final int WIDTH = 555;
     private static final int HEIGHT = 615;
+    private static final int HIGH_SCORE_ROWS = 10;
+    private static final boolean PRINT_STATS = Boolean.getBoolean("yogi.printStats");
     private GamePanel gamePanel;
-    public JLabel stats;
-    private Clip backgroundMusic;
+    private MusicPlayer backgroundMusic;
     private boolean isMuted = false;
+    private final DatabaseConfig databaseConfig = DatabaseConfig.fromSystemProperties();
+    private ScoreWriter scoreWriter;
+    private LeaderboardCache leaderboard;
 
     /**
      * This is the constructor of the class.
      * It creates a new JFrame object and adds a background image to it.
      * It also adds a GamePanel object to the frame.
+     *
+     * @param assets The loader that has loaded the images and the music.
      */
-    public YogiBearGUI() {
+    public YogiBearGUI(AssetLoader assets) {
         setTitle("Yogi Bear Game");
         setSize(WIDTH, HEIGHT);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
-        setResizable(false);
+        setResizable(true);
 
-        stats = new JLabel("");
-
-        stats.setFont(new Font(stats.getName(), Font.PLAIN, 10));
-        add(stats, BorderLayout.SOUTH);
-
-        gamePanel = new GamePanel(this);
+        gamePanel = new GamePanel(assets);
         add(gamePanel, BorderLayout.CENTER);
 
-        try {
-            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(new File("assets/bgmusic.wav"));
-            backgroundMusic = AudioSystem.getClip();
-            backgroundMusic.open(audioInputStream);
-        } catch (LineUnavailableException | IOException | UnsupportedAudioFileException e) {
-            e.printStackTrace();
-        }
+        ScoreStore scoreStore = ScoreStore.open(databaseConfig);
+        scoreWriter = new ScoreWriter(scoreStore, new File(System.getProperty("yogi.journal", "scores.journal")));
+        leaderboard = new LeaderboardCache(scoreStore, HIGH_SCORE_ROWS,
+                Long.getLong("yogi.leaderboard.staleMillis", 60_000));
+        gamePanel.setScoreWriter(scoreWriter);
+        gamePanel.setLeaderboard(leaderboard);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gamePanel.stopRecording();
+            scoreWriter.close();
+            scoreStore.close();
+            System.out.println(leaderboard);
+        }, "score-writer-shutdown"));
+
+        backgroundMusic = assets.getMusic();
 
         playBackgroundMusic();
         createMenuBar();
         setVisible(true);
+        assets.logMilestone("Game window opened");
     }
 
     /**
      * This method is used to play the background music.
+     * The music is streamed by its own thread, so this returns at once.
      */
     private void playBackgroundMusic() {
-        if (backgroundMusic != null && !isMuted) {
-            backgroundMusic.loop(Clip.LOOP_CONTINUOUSLY);
+        if (!isMuted) {
+            backgroundMusic.play();
         }
     }
 
@@ -68,7 +78,7 @@ public class YogiBearGUI extends JFrame {
     private void toggleMute() {
         isMuted = !isMuted;
         if (isMuted) {
-            backgroundMusic.stop();
+            backgroundMusic.pause();
         } else {
             playBackgroundMusic();
         }
@@ -76,6 +86,7 @@ public class YogiBearGUI extends JFrame {
 
     /**
      * This method is used to show the high score table.
+     * The scores come from the leaderboard cache, so opening the table never waits for the score store.
      */
     private void showHighScoreTable() {
         JFrame highScoreFrame = new JFrame("High Scores");
@@ -86,27 +97,18 @@ public class YogiBearGUI extends JFrame {
         highScorePanel.setLayout(new BorderLayout());
 
         String[] columnNames = {"ID","Name", "Score", "Time"};
-        String[][] data = new String[10][4];
-
-        try {
-            Connection connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/highscores", "root", "salam123");
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery("SELECT * FROM scores ORDER BY score DESC LIMIT 10");
-
-            int i = 0;
-            while (resultSet.next()) {
-                data[i][0] = resultSet.getString("id");
-                data[i][1] = resultSet.getString("player_name");
-                data[i][2] = resultSet.getString("score");
-                data[i][3] = resultSet.getString("time");
-                i++;
+        DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0);
+        Runnable showScores = () -> fillHighScoreTable(tableModel);
+        showScores.run();
+        leaderboard.addChangeListener(showScores);
+        highScoreFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                leaderboard.removeChangeListener(showScores);
             }
-            connection.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        });
 
-        JTable highScoreTable = new JTable(data, columnNames);
+        JTable highScoreTable = new JTable(tableModel);
         highScoreTable.setEnabled(false);
         highScoreTable.setRowHeight(30);
         highScoreTable.setFont(new Font("Arial", Font.PLAIN, 20));
@@ -118,15 +120,51 @@ public class YogiBearGUI extends JFrame {
         highScorePanel.add(scrollPane, BorderLayout.CENTER);
 
         highScoreFrame.add(highScorePanel);
+        highScoreFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         highScoreFrame.setVisible(true);
     }
 
+    /**
+     * This method is used to fill the high score table from the leaderboard cache.
+     * It is called again whenever the cached scores change while the table is open.
+     *
+     * @param tableModel The model of the high score table.
+     */
+    private void fillHighScoreTable(DefaultTableModel tableModel) {
+        java.util.List<ScoreEntry> topScores = leaderboard.getTopScores();
+        tableModel.setRowCount(0);
+        for (ScoreEntry entry : topScores) {
+            tableModel.addRow(new Object[]{entry.getId() == null ? "" : entry.getId(), entry.getPlayerName(),
+                    entry.getScore(), entry.getTime()});
+        }
+        tableModel.setRowCount(HIGH_SCORE_ROWS);
+    }
+
+    GamePanel getGamePanel() {
+        return gamePanel;
+    }
+
     /**
      * This method is used to restart the game.
      */
     public void restartGame() {
         gamePanel.initializeGame();
         System.out.println("Game restarted");
+        if (PRINT_STATS) {
+            printStats();
+        }
+    }
+
+    /**
+     * This method is used to print the counters of the sprites, the music, the level generation and the inputs,
+     * which are not part of the GameMetrics. It is only called with -Dyogi.printStats=true.
+     */
+    private void printStats() {
+        System.out.println(gamePanel.getSprites());
+        System.out.println(backgroundMusic);
+        System.out.println(gamePanel.getModel().getReachability());
+        System.out.println(gamePanel.getModel().getTransitionStats());
+        System.out.println(gamePanel.getInputs());
     }
 
     /**
@@ -156,6 +194,30 @@ public class YogiBearGUI extends JFrame {
             levelsMenu.add(levelMenuItem);
         }
 
+        JMenu difficultyMenu = new JMenu("Difficulty");
+        gameMenu.add(difficultyMenu);
+
+        ButtonGroup difficultyGroup = new ButtonGroup();
+        for (Difficulty difficulty : Difficulty.values()) {
+            JRadioButtonMenuItem difficultyMenuItem = new JRadioButtonMenuItem(difficulty.toString());
+            difficultyMenuItem.setSelected(difficulty == gamePanel.getModel().getDifficulty());
+            difficultyMenuItem.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    Difficulty previous = gamePanel.getModel().getDifficulty();
+                    if (!gamePanel.setDifficultyFromMenu(difficulty)) {
+                        difficultyGroup.clearSelection();
+                        for (int i = 0; i < difficultyMenu.getItemCount(); i++) {
+                            JMenuItem item = difficultyMenu.getItem(i);
+                            item.setSelected(item.getText().equals(previous.toString()));
+                        }
+                    }
+                }
+            });
+            difficultyGroup.add(difficultyMenuItem);
+            difficultyMenu.add(difficultyMenuItem);
+        }
+
         JMenu soundMenu = new JMenu("Sound");
         menuBar.add(soundMenu);
 